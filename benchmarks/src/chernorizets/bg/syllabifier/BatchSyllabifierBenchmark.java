@@ -0,0 +1,52 @@
+package chernorizets.bg.syllabifier;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of {@link BatchSyllabifier} with the fork/join pool's parallelism,
+ * on a million-word batch drawn from the frequency workload. Parallelism
+ * 0 stands for all available processors.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchSyllabifierBenchmark {
+
+    private static final int BATCH_SIZE = 1_000_000;
+
+    @Param({"1", "4", "16", "0"})
+    public int parallelism;
+
+    String[] words;
+
+    ForkJoinPool pool;
+
+    BatchSyllabifier batchSyllabifier;
+
+    @Setup
+    public void setup() {
+        var tokens = Workloads.frequencyTokens();
+
+        words = new String[BATCH_SIZE];
+        for (int i = 0; i < words.length; i++) words[i] = tokens[i % tokens.length];
+
+        pool = new ForkJoinPool(parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism);
+        batchSyllabifier = new BatchSyllabifier(new Syllabifier(), pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public SyllabifiedBatch syllabifyAll() {
+        return batchSyllabifier.syllabifyAll(words);
+    }
+}
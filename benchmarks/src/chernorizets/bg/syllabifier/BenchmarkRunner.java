@@ -0,0 +1,41 @@
+package chernorizets.bg.syllabifier;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Entry point of the benchmarks jar. Accepts the usual JMH command line,
+ * and always attaches the GC profiler, so that allocation rates are
+ * reported next to throughput.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String ... args)
+            throws RunnerException, CommandLineOptionException, IOException {
+        var cmdLine = new CommandLineOptions(args);
+
+        if (cmdLine.shouldHelp()) {
+            cmdLine.showHelp();
+            return;
+        }
+
+        var options = new OptionsBuilder()
+                .parent(cmdLine)
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        var runner = new Runner(options);
+
+        if (cmdLine.shouldList()) {
+            runner.list();
+        } else {
+            runner.run();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package chernorizets.bg.syllabifier;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-character cost of letter classification over the test corpus:
+ * the class-and-rank table versus the boxed {@code Set<Character>}
+ * lookups it replaced. The {@code mixedCase} variants run over the corpus
+ * with some words capitalized, where the set lookups need every character
+ * lowercased first, while the table covers both cases.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LetterClassifierBenchmark {
+
+    char[] corpus;
+
+    char[] mixedCaseCorpus;
+
+    @Setup
+    public void setup() {
+        var words = Workloads.testCases();
+        corpus = String.join("", words).toLowerCase().toCharArray();
+
+        var mixedCase = new StringBuilder();
+        for (int i = 0; i < words.length; i++) {
+            var word = words[i];
+            mixedCase.append(i % 4 != 0 ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+        }
+        mixedCaseCorpus = mixedCase.toString().toCharArray();
+    }
+
+    @Benchmark
+    public int sonorityRank_table() {
+        int sum = 0;
+        for (char ch : corpus) sum += LetterClassifier.sonorityRank(ch);
+        return sum;
+    }
+
+    @Benchmark
+    public int sonorityRank_sets() {
+        int sum = 0;
+        for (char ch : corpus) sum += setBasedRank(ch);
+        return sum;
+    }
+
+    @Benchmark
+    public int sonorityRank_mixedCase_table() {
+        int sum = 0;
+        for (char ch : mixedCaseCorpus) sum += LetterClassifier.sonorityRank(ch);
+        return sum;
+    }
+
+    @Benchmark
+    public int sonorityRank_mixedCase_sets() {
+        int sum = 0;
+        for (char ch : mixedCaseCorpus) sum += setBasedRank(Character.toLowerCase(ch));
+        return sum;
+    }
+
+    @Benchmark
+    public int isVowel_table() {
+        int n = 0;
+        for (char ch : corpus) if (LetterClassifier.isVowel(ch)) n++;
+        return n;
+    }
+
+    @Benchmark
+    public int isVowel_sets() {
+        int n = 0;
+        for (char ch : corpus) if (LetterClassifier.VOWELS.contains(ch)) n++;
+        return n;
+    }
+
+    private static int setBasedRank(char ch) {
+        if (LetterClassifier.FRICATIVES.contains(ch) && ch != 'в') return 1;
+        if (LetterClassifier.STOPS.contains(ch) || LetterClassifier.AFFRICATES.contains(ch)) return 2;
+        if (ch == 'в') return 3;
+        if (LetterClassifier.SONORANTS.contains(ch)) return 4;
+        if (LetterClassifier.VOWELS.contains(ch)) return 5;
+
+        return 0;
+    }
+}
@@ -0,0 +1,117 @@
+package chernorizets.bg.syllabifier;
+
+import chernorizets.bg.syllabifier.corpus.CorpusSyllabifier;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scalar versus vectorized {@link LetterMasks}, over a large corpus: just
+ * classifying it, a buffer at a time, and syllabifying all of it with
+ * {@link CorpusSyllabifier}.
+ * <p>
+ * The vector scanner needs the {@code vector} profile and Java 17:
+ * <pre>
+ * mvn -Pjmh,vector package
+ * java -jar target/benchmarks.jar LetterMasksBenchmark -jvmArgsAppend --add-modules=jdk.incubator.vector
+ * </pre>
+ * The corpus is running text made up of the frequency workload, unless a
+ * file is given with {@code -p corpus=FILE}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LetterMasksBenchmark {
+
+    private static final String GENERATED = "generated";
+
+    // Characters of generated text
+    private static final int GENERATED_SIZE = 1 << 24;
+
+    // Like the CorpusSyllabifier buffer
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    @Param({"scalar", "vector"})
+    public String scanner;
+
+    @Param({GENERATED})
+    public String corpus;
+
+    char[] text;
+
+    LetterMasks masks;
+
+    CorpusSyllabifier corpusSyllabifier;
+
+    final char[] buffer = new char[BUFFER_SIZE];
+
+    @Setup
+    public void setup() throws IOException {
+        text = corpus.equals(GENERATED)
+                ? runningText()
+                : Files.readString(Path.of(corpus), StandardCharsets.UTF_8).toCharArray();
+
+        masks = scanner.equals("scalar") ? LetterMasks.scalar() : new LetterMasks();
+        if (scanner.equals("vector") && !masks.isVectorized()) {
+            throw new IllegalStateException("No vector scanner: build with -Pvector, and run with "
+                    + "-jvmArgsAppend --add-modules=jdk.incubator.vector");
+        }
+
+        corpusSyllabifier = new CorpusSyllabifier(new Syllabifier(), "-", masks);
+    }
+
+    @Benchmark
+    public int classify() {
+        int nVowels = 0;
+
+        for (int from = 0; from < text.length; from += BUFFER_SIZE) {
+            int n = Math.min(BUFFER_SIZE, text.length - from);
+            System.arraycopy(text, from, buffer, 0, n);
+
+            masks.classify(buffer, n);
+            nVowels += masks.nextVowel(0, n);
+        }
+
+        return nVowels;
+    }
+
+    @Benchmark
+    public void syllabifyCorpus() throws IOException {
+        corpusSyllabifier.syllabifyText(CharBuffer.wrap(text), Writer.nullWriter());
+    }
+
+    /*
+     * Frequency workload tokens as sentences - capitalized, with punctuation
+     * and the odd quote or dash.
+     */
+    private static char[] runningText() {
+        var tokens = Workloads.frequencyTokens();
+        var text = new StringBuilder(GENERATED_SIZE + 64);
+
+        for (int i = 0; text.length() < GENERATED_SIZE; i++) {
+            var token = tokens[i % tokens.length];
+            int pos = i % 13;
+
+            if (pos == 0) {
+                text.append(Character.toUpperCase(token.charAt(0))).append(token, 1, token.length());
+            } else if (pos == 7) {
+                text.append('„').append(token).append("“ –");
+            } else {
+                text.append(token);
+            }
+
+            text.append(pos == 12 ? ". " : pos == 5 ? ", " : " ");
+        }
+
+        return text.toString().toCharArray();
+    }
+}
@@ -0,0 +1,112 @@
+package chernorizets.bg.syllabifier;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link Syllabifier} on a single word per operation, cycling
+ * through the selected workload. Each thread walks the workload from its own
+ * starting point, so that threads don't hit the same word in lockstep.
+ * <p>
+ * Run with {@code -prof gc} (on by default through {@link BenchmarkRunner})
+ * to see the allocation rate alongside throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SyllabifierBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Workload {
+        @Param({Workloads.TEST_CASES, Workloads.FREQUENCY, Workloads.ADVERSARIAL})
+        public String workload;
+
+        final Syllabifier syllabifier = new Syllabifier();
+
+        final CachingSyllabifier cachingSyllabifier = new CachingSyllabifier(syllabifier, 4096);
+
+        String[] words;
+
+        @Setup
+        public void setup() {
+            words = Workloads.load(workload);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        // Big enough for every word in the workloads
+        final int[] breakOffsets = new int[256];
+
+        @Setup
+        public void setup(Workload workload) {
+            next = Math.floorMod(Thread.currentThread().getId() * 7919, workload.words.length);
+        }
+
+        String nextWord(String[] words) {
+            String word = words[next];
+            next = (next + 1 == words.length) ? 0 : next + 1;
+            return word;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<String> syllabify_1thread(Workload workload, Cursor cursor) {
+        return workload.syllabifier.syllabify(cursor.nextWord(workload.words));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<String> syllabify_4threads(Workload workload, Cursor cursor) {
+        return workload.syllabifier.syllabify(cursor.nextWord(workload.words));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public List<String> syllabify_maxThreads(Workload workload, Cursor cursor) {
+        return workload.syllabifier.syllabify(cursor.nextWord(workload.words));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int syllabifyInto_1thread(Workload workload, Cursor cursor) {
+        return workload.syllabifier.syllabifyInto(cursor.nextWord(workload.words), cursor.breakOffsets);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int syllabifyInto_4threads(Workload workload, Cursor cursor) {
+        return workload.syllabifier.syllabifyInto(cursor.nextWord(workload.words), cursor.breakOffsets);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int syllabifyInto_maxThreads(Workload workload, Cursor cursor) {
+        return workload.syllabifier.syllabifyInto(cursor.nextWord(workload.words), cursor.breakOffsets);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<String> cached_1thread(Workload workload, Cursor cursor) {
+        return workload.cachingSyllabifier.syllabify(cursor.nextWord(workload.words));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<String> cached_4threads(Workload workload, Cursor cursor) {
+        return workload.cachingSyllabifier.syllabify(cursor.nextWord(workload.words));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public List<String> cached_maxThreads(Workload workload, Cursor cursor) {
+        return workload.cachingSyllabifier.syllabify(cursor.nextWord(workload.words));
+    }
+}
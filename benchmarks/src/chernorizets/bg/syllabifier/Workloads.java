@@ -0,0 +1,135 @@
+package chernorizets.bg.syllabifier;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Word lists the benchmarks are run against.
+ */
+final class Workloads {
+
+    static final String TEST_CASES = "test-cases";
+    static final String FREQUENCY = "frequency";
+    static final String ADVERSARIAL = "adversarial";
+
+    // Size of the token stream sampled from the frequency list
+    private static final int N_FREQUENCY_TOKENS = 10_000;
+
+    private Workloads() {}
+
+    static String[] load(String name) {
+        switch (name) {
+            case TEST_CASES: return testCases();
+            case FREQUENCY: return frequencyTokens();
+            case ADVERSARIAL: return adversarial();
+            default: throw new IllegalArgumentException("Unknown workload: " + name);
+        }
+    }
+
+    /**
+     * The words in {@code Main.TEST_CASES}. Main lives in the default package,
+     * which can't be imported, so it's read reflectively.
+     */
+    @SuppressWarnings("unchecked")
+    static String[] testCases() {
+        try {
+            var field = Class.forName("Main").getDeclaredField("TEST_CASES");
+            field.setAccessible(true);
+
+            var words = new ArrayList<String>();
+            for (Object testCase : (List<Object>) field.get(null)) {
+                var examples = testCase.getClass().getDeclaredField("examples");
+                examples.setAccessible(true);
+                words.addAll((List<String>) examples.get(testCase));
+            }
+
+            return words.toArray(new String[0]);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot read Main.TEST_CASES", e);
+        }
+    }
+
+    /**
+     * A stream of tokens drawn from the bundled frequency-ordered word list,
+     * following Zipf's law - the way words occur in running text.
+     */
+    static String[] frequencyTokens() {
+        var words = frequencyList();
+
+        // Cumulative Zipf weights: the word of rank r has weight 1/r
+        var cumulative = new double[words.size()];
+        double total = 0;
+        for (int r = 0; r < words.size(); r++) {
+            total += 1.0 / (r + 1);
+            cumulative[r] = total;
+        }
+
+        var random = new Random(42);
+        var tokens = new String[N_FREQUENCY_TOKENS];
+        for (int i = 0; i < tokens.length; i++) {
+            int idx = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            tokens[i] = words.get(idx >= 0 ? idx : -idx - 1);
+        }
+
+        return tokens;
+    }
+
+    static List<String> frequencyList() {
+        var words = new ArrayList<String>();
+
+        try (var in = Workloads.class.getResourceAsStream("/words/frequency.txt")) {
+            if (in == null) throw new IllegalStateException("Missing /words/frequency.txt");
+
+            var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            for (String line; (line = reader.readLine()) != null; ) {
+                line = line.strip();
+                if (!line.isEmpty() && !line.startsWith("#")) words.add(line);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return words;
+    }
+
+    /**
+     * Inputs that stress the slow paths: long consonant clusters, stacked
+     * prefixes, many vowels, forced breaks and mixed case.
+     */
+    static String[] adversarial() {
+        var words = new ArrayList<String>();
+
+        // Long consonant clusters, including the 'щ' and 'дж' special cases
+        words.add("а" + "вдж".repeat(8) + "а");
+        words.add("о" + "щр".repeat(10) + "о");
+        words.add("е" + "здн".repeat(10) + "и");
+        words.add("ъ" + "мнлр".repeat(8) + "ъ");
+        words.add("пъстървоизследователство");
+        words.add("контрстрпршкщвстр");
+
+        // Stacked prefixes and long prefixed compounds
+        words.add("безизвъзразпредизразен");
+        words.add("предразпредразпредразположение");
+        words.add("неотнеотнеотложен");
+        words.add("безвъзмездностностност");
+
+        // Many short syllables
+        words.add("ааааааааааааааааааааааааааааааааааааааааааааааааааааааааааааааааааааааа");
+        words.add("ламаламаламаламаламаламаламаламаламаламаламаламаламаламаламаламаламаламала");
+
+        // Forced breaks, mixed case and padding
+        words.add("над.над.над.над.над.живея");
+        words.add("  ПРЕДРАЗПОЛОЖЕНИЕ  ");
+        words.add("ЏеЃеЌеЉеЊе");
+        words.add("Ўорўик.Ўорўик.Ўорўик");
+
+        return words.toArray(new String[0]);
+    }
+}
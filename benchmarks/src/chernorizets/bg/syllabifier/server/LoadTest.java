@@ -0,0 +1,141 @@
+package chernorizets.bg.syllabifier.server;
+
+import chernorizets.bg.syllabifier.CachingSyllabifier;
+import chernorizets.bg.syllabifier.Syllabifier;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Load-tests a {@link SyllabificationServer} with single-word requests, over
+ * a fixed number of concurrent keep-alive connections, and reports the
+ * request rate and latency percentiles.
+ * <p>
+ * Usage: LoadTest [--url=URL | --embedded] [--concurrency=N] [--seconds=N] [--words=WORD_LIST]
+ * <p>
+ * It's built with the benchmarks, by the {@code jmh} profile, and isn't part
+ * of the library jar.
+ * <p>
+ * With {@code --embedded}, the server is started in this JVM, on a free port.
+ * The word list has a word per line, like the ones {@code LexiconCompiler}
+ * takes. Without one, a short built-in list is used.
+ */
+public class LoadTest {
+
+    private static final List<String> DEFAULT_WORDS = List.of(
+            "и", "на", "да", "се", "съм", "това", "което", "година", "България", "българският",
+            "държава", "правителство", "министър", "председател", "гражданин", "възможност",
+            "изключвам", "преподавател", "здравословен", "научноизследователски");
+
+    // Latencies kept for computing percentiles; the rest are only counted
+    private static final int MAX_SAMPLES = 1 << 22;
+
+    public static void main(String ... args) throws Exception {
+        String url = "http://127.0.0.1:" + SyllabificationServer.DEFAULT_PORT;
+        boolean embedded = false;
+        int concurrency = 64, seconds = 10;
+        List<String> words = DEFAULT_WORDS;
+
+        for (var arg : args) {
+            if (arg.startsWith("--url=")) url = arg.substring("--url=".length());
+            else if (arg.equals("--embedded")) embedded = true;
+            else if (arg.startsWith("--concurrency=")) concurrency = Integer.parseInt(arg.substring("--concurrency=".length()));
+            else if (arg.startsWith("--seconds=")) seconds = Integer.parseInt(arg.substring("--seconds=".length()));
+            else if (arg.startsWith("--words=")) words = readWords(Path.of(arg.substring("--words=".length())));
+            else {
+                System.err.println("Usage: LoadTest [--url=URL | --embedded] [--concurrency=N] [--seconds=N] [--words=WORD_LIST]");
+                System.exit(2);
+            }
+        }
+
+        SyllabificationServer server = null;
+        if (embedded) {
+            SyllabificationServer.disableNagle();
+            server = new SyllabificationServer(new InetSocketAddress("127.0.0.1", 0),
+                    new CachingSyllabifier(new Syllabifier(), SyllabificationServer.DEFAULT_CACHE_SIZE));
+            server.start();
+            url = "http://127.0.0.1:" + server.port();
+        }
+
+        try {
+            run(url, words, concurrency, seconds);
+        } finally {
+            if (server != null) server.stop(0);
+        }
+    }
+
+    private static void run(String url, List<String> words, int concurrency, int seconds) throws InterruptedException {
+        var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        var requests = words.stream()
+                .map(word -> HttpRequest.newBuilder(URI.create(
+                        url + "/syllabify?word=" + URLEncoder.encode(word, StandardCharsets.UTF_8))).build())
+                .toArray(HttpRequest[]::new);
+
+        var inFlight = new Semaphore(concurrency);
+        var completed = new LongAdder();
+        var failed = new LongAdder();
+        var latencies = new long[MAX_SAMPLES];
+        var nSamples = new AtomicInteger();
+
+        System.err.printf("Load-testing %s with %d concurrent requests for %d s...%n", url, concurrency, seconds);
+
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+
+        for (long i = 0; System.nanoTime() < deadline; i++) {
+            inFlight.acquire();
+
+            long sent = System.nanoTime();
+            client.sendAsync(requests[(int) (i % requests.length)], HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error != null || response.statusCode() != 200) {
+                            failed.increment();
+                        } else {
+                            completed.increment();
+
+                            int sample = nSamples.getAndIncrement();
+                            if (sample < MAX_SAMPLES) latencies[sample] = System.nanoTime() - sent;
+                        }
+
+                        inFlight.release();
+                    });
+        }
+
+        // Wait for the stragglers
+        inFlight.acquire(concurrency);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        int n = Math.min(nSamples.get(), MAX_SAMPLES);
+        Arrays.sort(latencies, 0, n);
+
+        System.err.printf("%,d requests (%,d failed) in %.1f s: %,.0f requests/s%n",
+                completed.sum(), failed.sum(), elapsed, completed.sum() / elapsed);
+        if (n > 0) {
+            System.err.printf("Latency: p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                    latencies[n / 2] / 1e6, latencies[(int) (n * 0.99)] / 1e6,
+                    latencies[(int) (n * 0.999)] / 1e6, latencies[n - 1] / 1e6);
+        }
+    }
+
+    private static List<String> readWords(Path wordList) throws IOException {
+        return Files.readAllLines(wordList, StandardCharsets.UTF_8).stream()
+                .map(line -> line.strip().split("\\s+")[0])
+                .filter(word -> !word.isEmpty() && !word.startsWith("#"))
+                .collect(Collectors.toList());
+    }
+}
@@ -1,5 +1,8 @@
 import chernorizets.bg.syllabifier.Syllabifier;
+import chernorizets.bg.syllabifier.corpus.SyllabifierFilter;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -7,9 +10,17 @@ class TestCase {
     final String heading;
     final List<String> examples;
 
+    // Whether to print every acceptable syllabification, not just the first
+    final boolean alternatives;
+
     TestCase(String heading, String ... examples) {
+        this(heading, false, examples);
+    }
+
+    TestCase(String heading, boolean alternatives, String ... examples) {
         this.heading = heading;
         this.examples = Arrays.asList(examples);
+        this.alternatives = alternatives;
     }
 }
 
@@ -26,7 +37,7 @@ class TestCaseRunner {
             test.examples.forEach(example -> {
                 var formatted = String.format("* %s --> %s",
                         example,
-                        String.join("-", syllabifier.syllabify(example)));
+                        test.alternatives ? alternatives(example) : String.join("-", syllabifier.syllabify(example)));
 
                 System.out.println(formatted);
             });
@@ -34,6 +45,13 @@ class TestCaseRunner {
             System.out.println();
         }
     }
+
+    private String alternatives(String example) {
+        var joined = new ArrayList<String>();
+        for (var syllables : syllabifier.syllabifications(example)) joined.add(String.join("-", syllables));
+
+        return String.join(", ", joined);
+    }
 }
 
 public class Main {
@@ -172,10 +190,37 @@ public class Main {
                     "изчезна", "разчитам", "безцветен", "разцепя",
                     "изчерпвам", "безценен", "безчувствен", "разцъфна",
                     "приказчица", "железце", "абхазци", "магданозче"
+            ),
+            new TestCase("Consonant clusters too long to memoize",
+                    "а" + "б".repeat(300) + "щра"
+            ),
+            new TestCase("Morphological suffix handling: -ва- verb endings after a lower-sonority consonant",
+                    "откачвам", "изказваш", "разказваме", "показвате", "показват", "разказвах",
+                    "показвахме", "отказвахте", "изказваха", "разказване", "отпечатвам", "изтръгвам"
+            ),
+            new TestCase("Morphological suffix handling: -ва- verb endings after a vowel or sonorant",
+                    "давам", "създаваме", "заспиваш", "обявявате", "наливаха", "свирване"
+            ),
+            new TestCase("Alternative syllabifications", true,
+                    "тесто", "лесно", "гнездо", "сестра", "мисля", "пясък",
+                    "възстановя", "разстояние", "изсмуквам", "безсмислен", "изказвам"
+            ),
+            new TestCase("Stress marks and capitals",
+                    "ма́гданоз", "магдано́з", "МАГДАНОЗ", "Магданоз", "МагДаНоз",
+                    "изключва́м", "ИЗКЛЮЧВАМ", "безсмъ́ртие", "Безсмъртие", "ѝ", "Ѝ", "„Изключвам“"
             )
     );
 
-    public static void main(String[] args) {
+    /**
+     * Prints the syllabification of the test cases - or, with {@code --filter},
+     * runs as a stdin/stdout filter, with the options of {@link SyllabifierFilter}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--filter")) {
+            SyllabifierFilter.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         var testRunner = new TestCaseRunner();
         
         testRunner.runTests(TEST_CASES);
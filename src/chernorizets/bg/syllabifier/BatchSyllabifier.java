@@ -0,0 +1,167 @@
+package chernorizets.bg.syllabifier;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.StreamSupport;
+
+/**
+ * Syllabifies large batches of words - e.g. lemma lists - in parallel,
+ * on a work-stealing fork/join pool.
+ * <p>
+ * Batches are split recursively down to chunks of a few thousand words,
+ * small enough for a chunk's words and results to stay in cache. Each chunk
+ * writes straight into its own slice of the preallocated result arrays,
+ * so results come out in input order with no merging step. The rare words
+ * too long for that are syllabified afterwards, on the calling thread.
+ * <p>
+ * This relies on {@link Syllabifier} being thread-safe: all workers share
+ * a single instance. This class is thread-safe as well.
+ */
+public class BatchSyllabifier {
+
+    // Words per leaf task
+    static final int CHUNK_SIZE = 2048;
+
+    private final Syllabifier syllabifier;
+
+    private final ForkJoinPool pool;
+
+    public BatchSyllabifier() {
+        this(new Syllabifier(), ForkJoinPool.commonPool());
+    }
+
+    public BatchSyllabifier(Syllabifier syllabifier, ForkJoinPool pool) {
+        this.syllabifier = syllabifier;
+        this.pool = pool;
+    }
+
+    public SyllabifiedBatch syllabifyAll(List<String> words) {
+        return syllabifyAll(words.toArray(new String[0]));
+    }
+
+    public SyllabifiedBatch syllabifyAll(String[] words) {
+        var batch = new SyllabifiedBatch(words);
+        pool.invoke(new ArrayTask(batch, words, 0, words.length));
+        batch.collectOverflow(syllabifier);
+
+        return batch;
+    }
+
+    /**
+     * Syllabifies the words of a spliterator, e.g. {@code stream.spliterator()}.
+     * <p>
+     * If the spliterator knows the exact size of its splits ({@link Spliterator#SUBSIZED}),
+     * it's split directly, without first collecting the words. Otherwise, the
+     * words are collected into an array first.
+     */
+    public SyllabifiedBatch syllabifyAll(Spliterator<String> words) {
+        if (!words.hasCharacteristics(Spliterator.SUBSIZED)) {
+            return syllabifyAll(StreamSupport.stream(words, false).toArray(String[]::new));
+        }
+
+        var wordArray = new String[(int) words.getExactSizeIfKnown()];
+        var batch = new SyllabifiedBatch(wordArray);
+        pool.invoke(new SpliteratorTask(batch, wordArray, words, 0));
+        batch.collectOverflow(syllabifier);
+
+        return batch;
+    }
+
+    /*
+     * Syllabifies a chunk of words into the batch. Not thread-safe - each
+     * leaf task has its own.
+     */
+    private final class ChunkWorker {
+        private final SyllabifiedBatch batch;
+
+        private final int[] breakOffsets = new int[SyllabifiedBatch.MAX_MASK_LENGTH];
+
+        ChunkWorker(SyllabifiedBatch batch) {
+            this.batch = batch;
+        }
+
+        void syllabify(int idx, String word) {
+            if (word == null) return;
+
+            int start = 0, end = word.length();
+            while (start < end && word.charAt(start) <= ' ') start++;
+            while (end > start && word.charAt(end - 1) <= ' ') end--;
+
+            // Left for after the parallel phase - see SyllabifiedBatch
+            if (end - start > SyllabifiedBatch.MAX_MASK_LENGTH) {
+                batch.markOverflow(idx);
+                return;
+            }
+
+            int nSyllables = syllabifier.syllabifyInto(word, start, end, breakOffsets);
+            batch.record(idx, start, end, nSyllables, breakOffsets);
+        }
+    }
+
+    private final class ArrayTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SyllabifiedBatch batch;
+        private final String[] words;
+        private final int from, to;
+
+        ArrayTask(SyllabifiedBatch batch, String[] words, int from, int to) {
+            this.batch = batch;
+            this.words = words;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                var worker = new ChunkWorker(batch);
+                for (int i = from; i < to; i++) worker.syllabify(i, words[i]);
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new ArrayTask(batch, words, from, mid), new ArrayTask(batch, words, mid, to));
+        }
+    }
+
+    private final class SpliteratorTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SyllabifiedBatch batch;
+        private final String[] words;
+        private final Spliterator<String> split;
+        private final int from;
+
+        SpliteratorTask(SyllabifiedBatch batch, String[] words, Spliterator<String> split, int from) {
+            this.batch = batch;
+            this.words = words;
+            this.split = split;
+            this.from = from;
+        }
+
+        @Override
+        protected void compute() {
+            Spliterator<String> prefix;
+
+            if (split.estimateSize() > CHUNK_SIZE && (prefix = split.trySplit()) != null) {
+                // trySplit() hands out the prefix, the rest stays in this spliterator.
+                int prefixSize = (int) prefix.getExactSizeIfKnown();
+
+                invokeAll(new SpliteratorTask(batch, words, prefix, from),
+                        new SpliteratorTask(batch, words, split, from + prefixSize));
+                return;
+            }
+
+            var worker = new ChunkWorker(batch);
+            int[] idx = {from};
+
+            split.forEachRemaining(word -> {
+                words[idx[0]] = word;
+                worker.syllabify(idx[0]++, word);
+            });
+        }
+    }
+}
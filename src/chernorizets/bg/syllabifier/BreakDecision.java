@@ -0,0 +1,54 @@
+package chernorizets.bg.syllabifier;
+
+/**
+ * One step of {@link Syllabifier#explain}: where the syllable break between
+ * two consecutive vowels went, and which rule put it there. Positions are
+ * indices into the normalized - trimmed and lowercased - word.
+ */
+public final class BreakDecision {
+
+    private final String word;
+    private final int leftVowel;
+    private final int rightVowel;
+    private final int onset;
+    private final BreakRule rule;
+
+    BreakDecision(String word, int leftVowel, int rightVowel, int onset, BreakRule rule) {
+        this.word = word;
+        this.leftVowel = leftVowel;
+        this.rightVowel = rightVowel;
+        this.onset = onset;
+        this.rule = rule;
+    }
+
+    public int leftVowel() {
+        return leftVowel;
+    }
+
+    public int rightVowel() {
+        return rightVowel;
+    }
+
+    /** The index of the first letter of the next syllable. */
+    public int onset() {
+        return onset;
+    }
+
+    public BreakRule rule() {
+        return rule;
+    }
+
+    /** The consonants between the two vowels, if any. */
+    public String cluster() {
+        return word.substring(leftVowel + 1, rightVowel);
+    }
+
+    /**
+     * E.g. "ал|ка [RISING_SONORITY]" for "малка" - the letters from one
+     * vowel to the next, with the break marked.
+     */
+    @Override
+    public String toString() {
+        return word.substring(leftVowel, onset) + "|" + word.substring(onset, rightVowel + 1) + " [" + rule + "]";
+    }
+}
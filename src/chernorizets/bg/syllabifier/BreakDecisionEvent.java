@@ -0,0 +1,36 @@
+package chernorizets.bg.syllabifier;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/*
+ * A single syllable break decision, see RuleMetrics. Off by default in
+ * recordings, since there's one for nearly every syllable.
+ */
+@Name("bg.syllabifier.BreakDecision")
+@Label("Syllable Break Decision")
+@Category("Bulgarian Syllabifier")
+@Description("The rule that decided a syllable break, and how long it took")
+@Enabled(false)
+@StackTrace(false)
+final class BreakDecisionEvent extends jdk.jfr.Event {
+
+    @Label("Rule")
+    String rule;
+
+    @Label("Word")
+    String word;
+
+    @Label("Onset")
+    @Description("Index in the word of the first letter of the next syllable")
+    int onset;
+
+    @Label("Decision Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long decisionNanos;
+}
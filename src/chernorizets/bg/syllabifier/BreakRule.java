@@ -0,0 +1,40 @@
+package chernorizets.bg.syllabifier;
+
+/**
+ * The rule that decided where a syllable break between two vowels goes,
+ * in the order {@link Syllabifier} tries them.
+ */
+public enum BreakRule {
+    /** No consonants between the vowels - the second one starts a syllable. */
+    ADJACENT_VOWELS,
+
+    /** A user-provided break marker, see {@link ForcedBreak#MARKER}. */
+    FORCED_BREAK,
+
+    /** A single consonant between the vowels starts the next syllable. */
+    SINGLE_CONSONANT,
+
+    /** 'щр', or 'щ' followed by a sonorant, before the second vowel. */
+    SHT_FIXUP,
+
+    /** A cluster that's kept together, per clusters.txt. */
+    KEEP_CLUSTER,
+
+    /** A cluster that's broken at a fixed point, per clusters.txt. */
+    BREAK_CLUSTER,
+
+    /** The end of a morphological prefix, per prefixes.txt. */
+    PREFIX,
+
+    /** The start of a morphological suffix, per suffixes.txt. */
+    SUFFIX,
+
+    /** The first point where sonority stops rising, or the start of the cluster. */
+    RISING_SONORITY;
+
+    private static final BreakRule[] VALUES = values();
+
+    static BreakRule ofOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
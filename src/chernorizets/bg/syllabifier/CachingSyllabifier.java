@@ -0,0 +1,169 @@
+package chernorizets.bg.syllabifier;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded memoization cache in front of a {@link Syllabifier}.
+ * <p>
+ * Word frequencies in natural text are Zipfian, so a cache of a few
+ * thousand entries covers most tokens. The cache is split into independently
+ * locked segments, each evicting its least recently used entry when full,
+ * so that lookups from many threads rarely contend.
+ * <p>
+ * Entries are keyed on the normalized word - trimmed and lowercased, with
+ * forced break markers kept - and the cached syllable lists are immutable.
+ * Each entry remembers the {@link RuleSet} it was syllabified by, and is
+ * only a hit while the syllabifier still has those rules - so once the rules
+ * are swapped, stale entries are replaced as they're looked up, or evicted.
+ * This class is thread-safe.
+ */
+public class CachingSyllabifier {
+
+    private final Syllabifier syllabifier;
+
+    private final Segment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingSyllabifier(int maxSize) {
+        this(new Syllabifier(), maxSize);
+    }
+
+    /**
+     * @param syllabifier the syllabifier to cache results of
+     * @param maxSize the maximum number of cached words
+     */
+    public CachingSyllabifier(Syllabifier syllabifier, int maxSize) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+
+        this.syllabifier = syllabifier;
+
+        // Enough segments to keep contention low, but not so many that
+        // each one is too small for LRU to be meaningful.
+        int nSegments = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4);
+        while (nSegments > 1 && maxSize / nSegments < 16) nSegments >>= 1;
+
+        this.segments = new Segment[nSegments];
+        for (int i = 0; i < nSegments; i++) {
+            // Spread the remainder, so that the segments add up to maxSize
+            int capacity = maxSize / nSegments + (i < maxSize % nSegments ? 1 : 0);
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    /**
+     * Same as {@link Syllabifier#syllabify(String)}, except that the
+     * returned list is unmodifiable.
+     */
+    public List<String> syllabify(String word) {
+        var norm = Syllabifier.normalizeWord(word);
+        var rules = syllabifier.rules();
+
+        var segment = segmentFor(norm);
+        var entry = segment.get(norm);
+
+        if (entry != null && entry.rules == rules) {
+            hits.increment();
+            return entry.syllables;
+        }
+
+        misses.increment();
+
+        // Computed outside of the lock - concurrent misses on the same word
+        // do redundant work, but never block each other.
+        var syllables = List.copyOf(syllabifier.syllabify(norm, rules));
+        return segment.putIfAbsent(norm, new Cached(rules, syllables));
+    }
+
+    /** The rules of the underlying syllabifier. */
+    public RuleSet rules() {
+        return syllabifier.rules();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (var segment : segments) size += segment.size();
+        return size;
+    }
+
+    public void clear() {
+        for (var segment : segments) segment.clear();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CachingSyllabifier[size=%d, hits=%d, misses=%d, evictions=%d]",
+                size(), hits(), misses(), evictions());
+    }
+
+    private Segment segmentFor(String norm) {
+        int h = norm.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    private static final class Cached {
+        final RuleSet rules;
+        final List<String> syllables;
+
+        Cached(RuleSet rules, List<String> syllables) {
+            this.rules = rules;
+            this.syllables = syllables;
+        }
+    }
+
+    private final class Segment {
+        private final LinkedHashMap<String, Cached> entries;
+
+        Segment(int capacity) {
+            // Access order makes iteration order least- to most-recently used
+            this.entries = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                    if (size() <= capacity) return false;
+
+                    evictions.increment();
+                    return true;
+                }
+            };
+        }
+
+        synchronized Cached get(String norm) {
+            return entries.get(norm);
+        }
+
+        // Entries by other rules are replaced.
+        synchronized List<String> putIfAbsent(String norm, Cached entry) {
+            var existing = entries.get(norm);
+            if (existing != null && existing.rules == entry.rules) return existing.syllables;
+
+            entries.put(norm, entry);
+            return entry.syllables;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+    }
+}
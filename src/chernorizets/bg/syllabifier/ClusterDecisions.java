@@ -0,0 +1,181 @@
+package chernorizets.bg.syllabifier;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Memoized break decisions for clusters of two or more consonants.
+ * <p>
+ * Where such a cluster breaks - by rising sonority, or by the exceptions to
+ * it for 'щ' and in the cluster rules - depends only on its letters. Only a
+ * prefix or suffix boundary inside the cluster, which depends on the whole
+ * word, can move a rising sonority break. Bulgarian has a small set of
+ * clusters that occur between vowels, so each one is decided the first time
+ * it's seen, and is a single lookup from then on.
+ * <p>
+ * A table belongs to the {@link RuleSet} it was built for, so when the rules
+ * are swapped, their decisions go with them. The table is thread-safe, and
+ * lock-free.
+ * <p>
+ * Usage: ClusterDecisions WORD_LIST
+ * <p>
+ * Syllabifies a word list, and prints every cluster seen, how it breaks and
+ * the rule that decided it, for review.
+ */
+public final class ClusterDecisions {
+
+    // Room for every cluster that occurs between vowels, many times over.
+    // Once the table is 3/4 full, new clusters are decided without memoizing.
+    static final int CAPACITY = 1 << 13;
+    private static final int MAX_SIZE = CAPACITY / 4 * 3;
+
+    // Decisions pack the rule's ordinal above the offset of the next
+    // syllable's onset within the cluster, plus a bit that tells them
+    // from an empty slot. Clusters decided without memoizing can be as
+    // long as the word, so the offset gets a whole int.
+    private static final long READY = 1L << 62;
+
+    private final RuleSet rules;
+
+    // Open addressing with linear probing; a 0 key is an empty slot. A key
+    // is claimed before its decision is published, so a reader may briefly
+    // find a key without a decision - and then decides the cluster itself.
+    private final AtomicLongArray keys = new AtomicLongArray(CAPACITY);
+    private final AtomicLongArray decisions = new AtomicLongArray(CAPACITY);
+    private final AtomicInteger size = new AtomicInteger();
+
+    ClusterDecisions(RuleSet rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Decides the break in the cluster occupying [from, to) of a word, given
+     * its key as built with {@link ClusterRules#extendKey}. Clusters without
+     * a valid key - with non-letters, or too long - are decided every time.
+     *
+     * @return a decision to decode with {@link #ruleOf} and {@link #offsetOf}
+     */
+    long decide(CharSequence word, int from, int to, long key) {
+        if (!ClusterRules.isValidKey(key, to - from)) return compute(word, from, to, key);
+
+        int slot = ClusterRules.hash(key) & (CAPACITY - 1);
+        for (long k; (k = keys.get(slot)) != 0; slot = (slot + 1) & (CAPACITY - 1)) {
+            if (k == key) {
+                long decision = decisions.get(slot);
+                return decision != 0 ? decision : compute(word, from, to, key);
+            }
+        }
+
+        long decision = compute(word, from, to, key);
+        if (size.get() < MAX_SIZE) insert(slot, key, decision);
+
+        return decision;
+    }
+
+    private void insert(int slot, long key, long decision) {
+        for (; ; slot = (slot + 1) & (CAPACITY - 1)) {
+            if (keys.compareAndSet(slot, 0, key)) {
+                size.incrementAndGet();
+                decisions.set(slot, decision);
+                return;
+            }
+
+            // Another thread got there first
+            if (keys.get(slot) == key) return;
+        }
+    }
+
+    private long compute(CharSequence word, int from, int to, long key) {
+        // 'щр' is a syllable onset when in front of a vowel.
+        // Although 'щ' + sonorant technically follows rising sonority, syllables
+        // like щнV, щлV etc. are unnatural and incorrect. In such cases, we treat
+        // the sonorant as the onset of the next syllable.
+        if (LetterClassifier.toLowerCase(word.charAt(to - 2)) == 'щ') {
+            char penult = LetterClassifier.toLowerCase(word.charAt(to - 1));
+
+            if (penult == 'р') return pack(BreakRule.SHT_FIXUP, to - 2 - from);
+
+            if (LetterClassifier.isSonorant(penult)) return pack(BreakRule.SHT_FIXUP, to - 1 - from);
+        }
+
+        // Check for situations where we shouldn't break the cluster, or
+        // where we should break it even if it obeys the principle of
+        // rising sonority.
+        int rule = rules.clusterRules.lookup(key, to - from);
+        if (rule != ClusterRules.NO_RULE) {
+            return pack(ClusterRules.isKeep(rule) ? BreakRule.KEEP_CLUSTER : BreakRule.BREAK_CLUSTER,
+                    ClusterRules.offset(rule));
+        }
+
+        return pack(BreakRule.RISING_SONORITY, SonorityModel.findRisingSonorityBreak(word, from, to, rules) - from);
+    }
+
+    private static long pack(BreakRule rule, int offset) {
+        return READY | (long) rule.ordinal() << Integer.SIZE | (offset & 0xFFFF_FFFFL);
+    }
+
+    static BreakRule ruleOf(long decision) {
+        return BreakRule.ofOrdinal((int) ((decision & ~READY) >>> Integer.SIZE));
+    }
+
+    /** The index within the cluster where the next syllable starts. */
+    static int offsetOf(long decision) {
+        return (int) decision;
+    }
+
+    /** The number of clusters decided so far. */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Prints the clusters decided so far, in alphabetical order, one per line:
+     * the cluster, where it breaks, and the rule that decided it. Rising
+     * sonority breaks can still be moved by a prefix or suffix boundary.
+     */
+    void dump(PrintWriter out) {
+        var sorted = new TreeMap<String, Long>();
+
+        for (int slot = 0; slot < CAPACITY; slot++) {
+            long key = keys.get(slot);
+            long decision = decisions.get(slot);
+
+            if (key != 0 && decision != 0) sorted.put(ClusterRules.clusterOf(key), decision);
+        }
+
+        for (var entry : sorted.entrySet()) {
+            var cluster = entry.getKey();
+            int offset = offsetOf(entry.getValue());
+
+            out.printf("%s\t%s-%s\t%s%n", cluster, cluster.substring(0, offset), cluster.substring(offset),
+                    ruleOf(entry.getValue()));
+        }
+
+        out.flush();
+    }
+
+    public static void main(String ... args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: ClusterDecisions WORD_LIST");
+            System.exit(2);
+        }
+
+        var syllabifier = new Syllabifier();
+        var breakOffsets = new int[Lexicon.MAX_WORD_LENGTH];
+        for (var word : LexiconCompiler.readWords(Path.of(args[0]))) {
+            syllabifier.syllabifyInto(word, breakOffsets);
+        }
+
+        var out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        var decisions = syllabifier.rules().clusterDecisions;
+        decisions.dump(out);
+
+        System.err.printf("%,d clusters%n", decisions.size());
+    }
+}
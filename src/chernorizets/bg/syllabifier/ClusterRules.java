@@ -0,0 +1,233 @@
+package chernorizets.bg.syllabifier;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exceptions to the rising sonority principle for whole consonant clusters,
+ * compiled into a hash table keyed on the letters of the cluster. A single
+ * probe tells whether to keep the cluster together, or where to break it,
+ * regardless of how many rules there are.
+ */
+final class ClusterRules {
+
+    /** Returned by {@link #lookup} when no rule applies to a cluster. */
+    static final int NO_RULE = -1;
+
+    // Letters are packed into the key 6 bits at a time, as an index into
+    // 'а' through 'џ' plus one - so that no key is ever 0.
+    private static final char ALPHABET_START = 'а';
+    private static final int ALPHABET_SIZE = 'џ' - ALPHABET_START + 1;
+    private static final int BITS_PER_LETTER = 6;
+
+    static final int MAX_CLUSTER_LENGTH = Long.SIZE / BITS_PER_LETTER;
+
+    /** The key of an empty cluster, to build up with {@link #extendKey}. */
+    static final long EMPTY_KEY = 0;
+
+    // Sticks once a cluster has a letter no rule can have. Keys of at most
+    // MAX_CLUSTER_LENGTH letters are never negative.
+    private static final long INVALID_KEY = -1;
+
+    // Open addressing with linear probing. A 0 key marks an empty slot.
+    private final long[] keys;
+    private final int[] rules;
+    private final int mask;
+
+    private ClusterRules(long[] keys, int[] rules) {
+        this.keys = keys;
+        this.rules = rules;
+        this.mask = keys.length - 1;
+    }
+
+    /**
+     * Looks up the rule for the consonant cluster occupying [start, end)
+     * of a character sequence. Letters are compared case-insensitively.
+     *
+     * @return {@link #NO_RULE}, or a rule to decode with {@link #isKeep}
+     * and {@link #offset}
+     */
+    int lookup(CharSequence word, int start, int end) {
+        return lookupKey(key(word, start, end));
+    }
+
+    /**
+     * Same as {@link #lookup(CharSequence, int, int)}, for a cluster of the
+     * given length whose key was built a letter at a time with {@link #extendKey}.
+     */
+    int lookup(long key, int length) {
+        return isValidKey(key, length) ? lookupKey(key) : NO_RULE;
+    }
+
+    /**
+     * Whether a key built with {@link #extendKey} identifies a cluster of
+     * the given length - i.e. it's neither too long, nor has non-letters.
+     */
+    static boolean isValidKey(long key, int length) {
+        return key > 0 && length <= MAX_CLUSTER_LENGTH;
+    }
+
+    /**
+     * The key of a cluster with a lowercase letter appended. Keys of
+     * clusters longer than {@link #MAX_CLUSTER_LENGTH} are meaningless, and
+     * must not be looked up.
+     */
+    static long extendKey(long key, char lower) {
+        int letter = lower - ALPHABET_START;
+        if (key == INVALID_KEY || letter < 0 || letter >= ALPHABET_SIZE) return INVALID_KEY;
+
+        return (key << BITS_PER_LETTER) | (letter + 1);
+    }
+
+    /** The letters of the cluster with the given (valid) key. */
+    static String clusterOf(long key) {
+        var cluster = new StringBuilder(MAX_CLUSTER_LENGTH);
+        for (long k = key; k != 0; k >>>= BITS_PER_LETTER) {
+            cluster.append((char) (ALPHABET_START + (k & ((1 << BITS_PER_LETTER) - 1)) - 1));
+        }
+
+        return cluster.reverse().toString();
+    }
+
+    private int lookupKey(long key) {
+        if (key <= 0) return NO_RULE;
+
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) return rules[slot];
+            if (keys[slot] == 0) return NO_RULE;
+        }
+    }
+
+    /** Whether the rule keeps the cluster together. */
+    static boolean isKeep(int rule) {
+        return (rule & 1) != 0;
+    }
+
+    /** The zero-based index within the cluster where the next syllable starts. */
+    static int offset(int rule) {
+        return rule >>> 1;
+    }
+
+    static ClusterRules load(String resourceName) {
+        try (var in = ClusterRules.class.getResourceAsStream(resourceName)) {
+            if (in == null) throw new IllegalStateException("Missing cluster rules: " + resourceName);
+
+            var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            return parse(reader, resourceName);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static ClusterRules parse(BufferedReader reader, String sourceName) throws IOException {
+        var clusters = new ArrayList<String>();
+        var rules = new ArrayList<Integer>();
+
+        int lineNo = 0;
+        for (String line; (line = reader.readLine()) != null; ) {
+            ++lineNo;
+
+            int comment = line.indexOf('#');
+            var content = (comment == -1 ? line : line.substring(0, comment)).strip();
+            if (content.isEmpty()) continue;
+
+            var fields = content.split("\\s+");
+            var cluster = fields.length > 1 ? fields[1] : "";
+
+            int rule;
+            if (fields[0].equals("keep") && fields.length == 2) {
+                rule = 1;
+            } else if (fields[0].equals("break") && fields.length == 3) {
+                int offset = parseOffset(fields[2], sourceName, lineNo);
+
+                if (offset < 1 || offset >= cluster.length()) {
+                    throw error(sourceName, lineNo, "break offset must be within the cluster");
+                }
+
+                rule = offset << 1;
+            } else {
+                throw error(sourceName, lineNo, "expected 'keep <cluster>' or 'break <cluster> <offset>'");
+            }
+
+            validateCluster(cluster, sourceName, lineNo);
+            if (clusters.contains(cluster)) throw error(sourceName, lineNo, "duplicate rule for " + cluster);
+
+            clusters.add(cluster);
+            rules.add(rule);
+        }
+
+        return compile(clusters, rules);
+    }
+
+    private static ClusterRules compile(List<String> clusters, List<Integer> rules) {
+        int capacity = Integer.highestOneBit(Math.max(1, clusters.size()) * 4);
+
+        var table = new ClusterRules(new long[capacity], new int[capacity]);
+
+        for (int i = 0; i < clusters.size(); i++) {
+            var cluster = clusters.get(i);
+            long key = key(cluster, 0, cluster.length());
+
+            int slot = hash(key) & table.mask;
+            while (table.keys[slot] != 0) slot = (slot + 1) & table.mask;
+
+            table.keys[slot] = key;
+            table.rules[slot] = rules.get(i);
+        }
+
+        return table;
+    }
+
+    // Returns 0 if the cluster can't have a rule.
+    private static long key(CharSequence word, int start, int end) {
+        if (end - start > MAX_CLUSTER_LENGTH) return 0;
+
+        long key = 0;
+        for (int i = start; i < end; i++) {
+            int letter = LetterClassifier.toLowerCase(word.charAt(i)) - ALPHABET_START;
+            if (letter < 0 || letter >= ALPHABET_SIZE) return 0;
+
+            key = (key << BITS_PER_LETTER) | (letter + 1);
+        }
+
+        return key;
+    }
+
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static void validateCluster(String cluster, String sourceName, int lineNo) {
+        if (cluster.length() < 2 || cluster.length() > MAX_CLUSTER_LENGTH) {
+            throw error(sourceName, lineNo, String.format(
+                    "clusters must be 2 to %d letters long", MAX_CLUSTER_LENGTH));
+        }
+
+        for (int i = 0; i < cluster.length(); i++) {
+            char ch = cluster.charAt(i);
+
+            if (!LetterClassifier.isConsonant(ch) && !LetterClassifier.isPalatalizer(ch)
+                    || Character.isUpperCase(ch)) {
+                throw error(sourceName, lineNo, "not a lowercase consonant: '" + ch + "'");
+            }
+        }
+    }
+
+    private static int parseOffset(String field, String sourceName, int lineNo) {
+        try {
+            return Integer.parseInt(field);
+        } catch (NumberFormatException e) {
+            throw error(sourceName, lineNo, "not a number: " + field);
+        }
+    }
+
+    private static IllegalArgumentException error(String sourceName, int lineNo, String message) {
+        return new IllegalArgumentException(String.format("%s:%d: %s", sourceName, lineNo, message));
+    }
+}
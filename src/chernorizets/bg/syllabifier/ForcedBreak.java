@@ -10,14 +10,11 @@ class ForcedBreak {
      */
     static final char MARKER = '.';
 
-    static int findForcedBreak(String word, int rangeStart, int rangeEnd) {
-        if (rangeStart >= rangeEnd) return -1;
+    static int findForcedBreak(CharSequence word, int rangeStart, int rangeEnd) {
+        for (int i = rangeStart; i < rangeEnd; i++) {
+            if (word.charAt(i) == MARKER) return i;
+        }
 
-        int markerPos = word.indexOf(MARKER, rangeStart);
-        return markerPos >= rangeEnd ? -1 : markerPos;
-    }
-
-    static String stripForcedBreaks(String segment) {
-        return segment.replaceAll("\\.", "");
+        return -1;
     }
 }
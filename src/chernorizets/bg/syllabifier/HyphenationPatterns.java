@@ -0,0 +1,372 @@
+package chernorizets.bg.syllabifier;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Liang-style hyphenation patterns, as used by TeX and by CSS hyphenation
+ * engines, compiled into an automaton for matching.
+ * <p>
+ * A pattern is a string of letters with digits between them, e.g. {@code а1ба}
+ * or {@code .на2}, where '.' anchors the pattern to the start or end of a word.
+ * To syllabify a word, every pattern occurring in it contributes its digits
+ * to the gaps between letters it covers, and the highest digit in each gap
+ * wins. An odd digit means a break, an even one an inhibited break.
+ * <p>
+ * The patterns are compiled into an Aho-Corasick automaton: a trie of the
+ * patterns, with every missing transition filled in from the longest suffix
+ * that's in the trie, and with each state carrying the digits of every
+ * pattern that ends there. Matching is then a single pass over the word, one
+ * table lookup per letter, with no rule branching - a fast, approximate
+ * alternative to {@link Syllabifier} when the patterns are derived from it
+ * by {@link PatternGenerator}. Instances are thread-safe.
+ */
+public final class HyphenationPatterns {
+
+    private static final char WORD_BOUNDARY = '.';
+
+    // Letters are 'а' through 'џ', same as MorphemeTrie. Only the ones the
+    // patterns use get a column in the automaton.
+    private static final char ALPHABET_START = 'а';
+    private static final char ALPHABET_END = 'џ';
+
+    // Gap values of the patterns, for words of up to this many letters,
+    // fit the scratch buffer without growing it.
+    private static final int SCRATCH_SIZE = 128;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(() -> new Scratch(SCRATCH_SIZE));
+
+    private final List<String> patterns;
+
+    // Cyrillic block, whose letters are looked up in either case
+    private static final char BLOCK_START = 'Ѐ';
+    private static final int BLOCK_SIZE = 0x100;
+
+    // The column of each character in the Cyrillic block, either case.
+    // Column 0 is the word boundary, and the last one is for anything no
+    // pattern has - which no pattern can match across, so it leads back to
+    // the root.
+    private final byte[] columns;
+
+    // The column of everything outside the block
+    private final int other;
+
+    private final int nColumns;
+
+    // next[state * nColumns + column] is the next state. State 0 is the root.
+    private final int[] next;
+
+    // The nonzero digits of the patterns ending in each state are
+    // outputs[outputStarts[s], outputStarts[s + 1]): each one is the digit,
+    // plus how many gaps back from the one after the last letter it goes, << 8.
+    private final int[] outputStarts;
+    private final int[] outputs;
+
+    private HyphenationPatterns(List<String> patterns, byte[] columns, int nColumns, int[] next,
+                                int[] outputStarts, int[] outputs) {
+        this.patterns = patterns;
+        this.columns = columns;
+        this.nColumns = nColumns;
+        this.other = nColumns - 1;
+        this.next = next;
+        this.outputStarts = outputStarts;
+        this.outputs = outputs;
+    }
+
+    /**
+     * Compiles patterns in TeX notation, e.g. {@code .а2б1в}.
+     */
+    public static HyphenationPatterns compile(List<String> patterns) {
+        var letterColumns = new byte[ALPHABET_END - ALPHABET_START + 1];
+        int nLetters = 0;
+
+        for (String pattern : patterns) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char ch = pattern.charAt(i);
+                if ((ch >= '0' && ch <= '9') || ch == WORD_BOUNDARY) continue;
+
+                if (ch < ALPHABET_START || ch > ALPHABET_END) {
+                    throw new IllegalArgumentException("Invalid character in pattern '" + pattern + "'");
+                }
+                if (letterColumns[ch - ALPHABET_START] == 0) letterColumns[ch - ALPHABET_START] = (byte) ++nLetters;
+            }
+        }
+
+        int nColumns = nLetters + 2;
+
+        // Letters are folded the same way they're classified, with marks and
+        // everything else in the last column.
+        var columns = new byte[BLOCK_SIZE];
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            char ch = LetterClassifier.toLowerCase((char) (BLOCK_START + i));
+            int letter = ch >= ALPHABET_START && ch <= ALPHABET_END ? letterColumns[ch - ALPHABET_START] : 0;
+            columns[i] = (byte) (letter != 0 ? letter : nColumns - 1);
+        }
+
+        // First the trie, where 0 is no transition - the root is never a target.
+        int maxStates = 1 + patterns.stream().mapToInt(String::length).sum();
+        var next = new int[maxStates * nColumns];
+        var depths = new int[maxStates];
+        var values = new byte[maxStates][];
+        int nStates = 1;
+
+        for (String pattern : patterns) {
+            var gaps = new byte[pattern.length() + 1];
+            int state = 0, length = 0;
+
+            for (int i = 0; i < pattern.length(); i++) {
+                char ch = pattern.charAt(i);
+
+                if (ch >= '0' && ch <= '9') {
+                    gaps[length] = (byte) (ch - '0');
+                    continue;
+                }
+
+                int idx = state * nColumns + (ch == WORD_BOUNDARY ? 0 : letterColumns[ch - ALPHABET_START]);
+                if (next[idx] == 0) {
+                    next[idx] = nStates;
+                    depths[nStates++] = length + 1;
+                }
+                state = next[idx];
+                length++;
+            }
+
+            if (length == 0) throw new IllegalArgumentException("Pattern without letters: '" + pattern + "'");
+            if (values[state] != null) throw new IllegalArgumentException("Duplicate pattern: '" + pattern + "'");
+
+            values[state] = Arrays.copyOf(gaps, length + 1);
+        }
+
+        // Then, breadth first, so that every state's longest proper suffix in
+        // the trie is done before it: fill in the missing transitions from the
+        // suffix, and merge in its digits, which end in the same place.
+        var suffix = new int[nStates];
+        var digits = new byte[nStates][];
+        var queue = new int[nStates];
+        int head = 0, tail = 0;
+
+        digits[0] = new byte[1];
+        for (int c = 0; c < nColumns; c++) {
+            if (next[c] != 0) queue[tail++] = next[c];
+        }
+
+        while (head < tail) {
+            int state = queue[head++];
+            digits[state] = mergeDigits(values[state], depths[state], digits[suffix[state]], depths[suffix[state]]);
+
+            for (int c = 0; c < nColumns; c++) {
+                int idx = state * nColumns + c;
+                int fallback = next[suffix[state] * nColumns + c];
+
+                if (next[idx] == 0) {
+                    next[idx] = fallback;
+                } else {
+                    suffix[next[idx]] = fallback;
+                    queue[tail++] = next[idx];
+                }
+            }
+        }
+
+        var outputStarts = new int[nStates + 1];
+        var outputs = new int[Arrays.stream(digits).mapToInt(HyphenationPatterns::countNonzero).sum()];
+        int nOutputs = 0;
+
+        for (int state = 0; state < nStates; state++) {
+            outputStarts[state] = nOutputs;
+
+            for (int j = 0; j < digits[state].length; j++) {
+                if (digits[state][j] != 0) outputs[nOutputs++] = (depths[state] - j) << 8 | digits[state][j];
+            }
+        }
+        outputStarts[nStates] = nOutputs;
+
+        return new HyphenationPatterns(List.copyOf(patterns), columns, nColumns,
+                Arrays.copyOf(next, nStates * nColumns), outputStarts, outputs);
+    }
+
+    /*
+     * A state's digits: those of its own pattern, if any, merged with those
+     * of its suffix, aligned at the end. There's one per gap of the state's
+     * letters, the first before the first letter.
+     */
+    private static byte[] mergeDigits(byte[] own, int depth, byte[] suffixDigits, int suffixDepth) {
+        var digits = own != null ? own.clone() : new byte[depth + 1];
+
+        for (int j = 0; j <= suffixDepth; j++) {
+            int k = depth - suffixDepth + j;
+            if (suffixDigits[j] > digits[k]) digits[k] = suffixDigits[j];
+        }
+
+        return digits;
+    }
+
+    private static int countNonzero(byte[] digits) {
+        int n = 0;
+        for (byte d : digits) if (d != 0) n++;
+
+        return n;
+    }
+
+    public static HyphenationPatterns load(Path file) throws IOException {
+        try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Reads patterns separated by whitespace, either bare or wrapped in a TeX
+     * {@code \patterns{...}} block. '%' starts a comment, as in TeX.
+     */
+    public static HyphenationPatterns parse(Reader in) throws IOException {
+        var reader = new BufferedReader(in);
+        var patterns = new ArrayList<String>();
+
+        for (String line; (line = reader.readLine()) != null; ) {
+            int comment = line.indexOf('%');
+            var content = (comment == -1 ? line : line.substring(0, comment))
+                    .replace("\\patterns{", " ")
+                    .replace('}', ' ')
+                    .strip();
+
+            if (content.isEmpty()) continue;
+            patterns.addAll(Arrays.asList(content.split("\\s+")));
+        }
+
+        return compile(patterns);
+    }
+
+    public int size() {
+        return patterns.size();
+    }
+
+    /**
+     * The patterns in TeX notation, in the order they were compiled.
+     */
+    public List<String> patterns() {
+        return Collections.unmodifiableList(patterns);
+    }
+
+    /**
+     * Writes the patterns as a TeX {@code \patterns{...}} block.
+     */
+    public void writeTeX(Writer out) throws IOException {
+        out.write("\\patterns{\n");
+        writePlain(out);
+        out.write("}\n");
+    }
+
+    /**
+     * Writes the patterns one per line, the format CSS hyphenation engines
+     * such as Hyphenopoly take.
+     */
+    public void writePlain(Writer out) throws IOException {
+        for (var pattern : patterns) {
+            out.write(pattern);
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Same as {@link Syllabifier#syllabify(String)}.
+     */
+    public List<String> syllabify(String word) {
+        var norm = Syllabifier.normalizeWord(word);
+        if (norm.isEmpty()) return List.of();
+
+        var breakOffsets = new int[norm.length()];
+        int nSyllables = syllabifyInto(norm, 0, norm.length(), breakOffsets);
+
+        return Syllabifier.toSyllables(norm, nSyllables, breakOffsets);
+    }
+
+    /**
+     * Same as {@link Syllabifier#syllabifyInto(CharSequence, int, int, int[])}.
+     * Forced breaks aren't honored.
+     */
+    public int syllabifyInto(CharSequence text, int start, int end, int[] breakOffsets) {
+        while (start < end && text.charAt(start) <= ' ') start++;
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+
+        if (start == end) return 0;
+
+        var gaps = gapValues(text, start, end);
+
+        // Gap k + 1 is right before letter k of the word. Never break before
+        // the first letter or after the last.
+        int nBreaks = 0;
+        for (int k = 1; k < end - start; k++) {
+            if ((gaps[k + 1] & 1) != 0) breakOffsets[nBreaks++] = start + k;
+        }
+
+        return nBreaks + 1;
+    }
+
+    /*
+     * Matches the patterns against the word occupying [start, end) of a text,
+     * with word boundaries on both sides. Gap i of the result is right before
+     * character i of ".word.". The buffer is thread-local scratch, valid until
+     * the next call on the same thread.
+     */
+    byte[] gapValues(CharSequence text, int start, int end) {
+        int nChars = end - start + 2;
+
+        var scratch = SCRATCH.get();
+        if (scratch.gaps.length < nChars + 1) {
+            scratch = new Scratch(nChars + 1);
+            SCRATCH.set(scratch);
+        }
+
+        var gaps = scratch.gaps;
+        Arrays.fill(gaps, 0, nChars + 1, (byte) 0);
+
+        // Character i of ".word." is text[start + i - 1], and the boundaries
+        // are column 0. The gap after character i is gap i + 1.
+        int state = next[0];
+        raise(state, 1, gaps);
+
+        for (int i = 1; i < nChars - 1; i++) {
+            state = next[state * nColumns + column(text.charAt(start + i - 1))];
+            raise(state, i + 1, gaps);
+        }
+
+        state = next[state * nColumns];
+        raise(state, nChars, gaps);
+
+        return gaps;
+    }
+
+    // Raises the gaps up to gapAfter to the digits of the patterns ending in a state.
+    private void raise(int state, int gapAfter, byte[] gaps) {
+        for (int o = outputStarts[state]; o < outputStarts[state + 1]; o++) {
+            int gap = gapAfter - (outputs[o] >>> 8);
+            byte digit = (byte) outputs[o];
+
+            if (digit > gaps[gap]) gaps[gap] = digit;
+        }
+    }
+
+    // Forced break markers and other non-letters are in no pattern, so
+    // patterns can't match across them.
+    private int column(char ch) {
+        int idx = ch - BLOCK_START;
+        return (idx >>> 8) == 0 ? columns[idx] : other;
+    }
+
+    // Per-thread buffer for matching: the gap values of ".word.".
+    private static final class Scratch {
+        final byte[] gaps;
+
+        Scratch(int size) {
+            this.gaps = new byte[size];
+        }
+    }
+}
@@ -4,7 +4,7 @@ import java.util.Set;
 
 class LetterClassifier {
     static final Set<Character> VOWELS = Set.of(
-            'а', 'ъ', 'о', 'у', 'е', 'и', 'ю', 'я'
+            'а', 'ъ', 'о', 'у', 'е', 'и', 'ю', 'я', 'ѝ'
     );
 
     static final Set<Character> SONORANTS = Set.of(
@@ -23,40 +23,143 @@ class LetterClassifier {
             'ч', 'ц'
     );
 
+    // Letter classes, as bit flags. The low bits of a table entry hold
+    // the sonority rank of the letter (see SonorityModel).
+    static final int RANK_MASK   = 0x7;
+    static final int VOWEL       = 1 << 3;
+    static final int CONSONANT   = 1 << 4;
+    static final int SONORANT    = 1 << 5;
+    static final int OBSTRUENT   = 1 << 6;
+    static final int STOP        = 1 << 7;
+    static final int FRICATIVE   = 1 << 8;
+    static final int AFFRICATE   = 1 << 9;
+    static final int PALATALIZER = 1 << 10;
+
+    // The Cyrillic Unicode block. Anything outside of it has no class.
+    private static final char BLOCK_START = 'Ѐ';
+    private static final int BLOCK_SIZE = 0x100;
+
+    /*
+     * Class-and-rank of every letter in the Cyrillic block, in both cases,
+     * so that classifying a letter is a single array load.
+     */
+    private static final short[] CLASSES = buildClassTable();
+
+    // Lowercase forms of the characters in the block
+    private static final char[] LOWER = buildLowerTable();
+
+    // Combining diacritical marks - e.g. the stress accents in dictionary
+    // entries. They belong to the letter before them.
+    private static final char COMBINING_MARKS_START = '\u0300';
+    private static final char COMBINING_MARKS_END = '\u036F';
+
     static boolean isVowel(char ch) {
-        return VOWELS.contains(ch);
+        return (classOf(ch) & VOWEL) != 0;
     }
 
     static boolean isConsonant(char ch) {
-        return ch == 'щ'
-                || isSonorant(ch)
-                || isObstruent(ch);
+        return (classOf(ch) & CONSONANT) != 0;
     }
 
     static boolean isPalatalizer(char ch) {
-        return ch == 'ь';
+        return (classOf(ch) & PALATALIZER) != 0;
     }
 
     static boolean isSonorant(char ch) {
-        return SONORANTS.contains(ch);
+        return (classOf(ch) & SONORANT) != 0;
     }
 
     /*
      * Opposite of sonorant.
      */
     static boolean isObstruent(char ch) {
-        return isStop(ch) || isFricative(ch) || isAffricate(ch);
+        return (classOf(ch) & OBSTRUENT) != 0;
     }
 
     static boolean isStop(char ch) {
-        return STOPS.contains(ch);
+        return (classOf(ch) & STOP) != 0;
     }
 
     static boolean isFricative(char ch) {
-        return FRICATIVES.contains(ch);
+        return (classOf(ch) & FRICATIVE) != 0;
     }
 
     static  boolean isAffricate(char ch) {
-        return AFFRICATES.contains(ch);
+        return (classOf(ch) & AFFRICATE) != 0;
+    }
+
+    static int sonorityRank(char ch) {
+        return classOf(ch) & RANK_MASK;
+    }
+
+    /**
+     * @return the class flags and sonority rank of the letter,
+     * or 0 if it's not a Bulgarian letter
+     */
+    static int classOf(char ch) {
+        int idx = ch - BLOCK_START;
+
+        // Characters below the block wrap around to large indices.
+        return (idx >>> 8) == 0 ? CLASSES[idx] : 0;
+    }
+
+    /*
+     * Case folding for callers that classify letters in place,
+     * without making a lowercase copy of the word first.
+     */
+    static char toLowerCase(char ch) {
+        int idx = ch - BLOCK_START;
+        if ((idx >>> 8) == 0) return LOWER[idx];
+
+        if (ch < 0x80) return ch >= 'A' && ch <= 'Z' ? (char) (ch + ('a' - 'A')) : ch;
+
+        return Character.toLowerCase(ch);
+    }
+
+    static boolean isCombiningMark(char ch) {
+        return ch >= COMBINING_MARKS_START && ch <= COMBINING_MARKS_END;
+    }
+
+    private static char[] buildLowerTable() {
+        var table = new char[BLOCK_SIZE];
+        for (int i = 0; i < BLOCK_SIZE; i++) table[i] = Character.toLowerCase((char) (BLOCK_START + i));
+
+        return table;
+    }
+
+    private static short[] buildClassTable() {
+        var table = new short[BLOCK_SIZE];
+
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            char lower = Character.toLowerCase((char) (BLOCK_START + i));
+            int cls = 0;
+
+            if (VOWELS.contains(lower)) cls |= VOWEL;
+            if (SONORANTS.contains(lower)) cls |= CONSONANT | SONORANT;
+            if (STOPS.contains(lower)) cls |= CONSONANT | OBSTRUENT | STOP;
+            if (FRICATIVES.contains(lower)) cls |= CONSONANT | OBSTRUENT | FRICATIVE;
+            if (AFFRICATES.contains(lower)) cls |= CONSONANT | OBSTRUENT | AFFRICATE;
+            if (lower == 'щ') cls |= CONSONANT;
+            if (lower == 'ь') cls |= PALATALIZER;
+
+            table[i] = (short) (cls | rankOf(lower, cls));
+        }
+
+        return table;
+    }
+
+    /*
+     * The sonority hierarchy: fricatives < stops and affricates < sonorants < vowels.
+     * 'в' behaves as something between a fricative and a sonorant, so it gets its
+     * own rank.
+     */
+    private static int rankOf(char lower, int cls) {
+        if (lower == 'в') return 3;
+        if ((cls & FRICATIVE) != 0) return 1;
+        if ((cls & (STOP | AFFRICATE)) != 0) return 2;
+        if ((cls & SONORANT) != 0) return 4;
+        if ((cls & VOWEL) != 0) return 5;
+
+        return 0;
     }
 }
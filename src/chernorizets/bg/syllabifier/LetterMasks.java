@@ -0,0 +1,150 @@
+package chernorizets.bg.syllabifier;
+
+/**
+ * The letters, combining marks and vowels of a text buffer, as bit masks -
+ * one bit per character, 64 characters per {@code long}.
+ * <p>
+ * Classifying a whole buffer at once, rather than each character as it's
+ * needed, lets the classification run as SIMD code: with the {@code vector}
+ * Maven profile built in, and {@code --add-modules jdk.incubator.vector} on
+ * Java 17 or newer, 16 to 32 characters at a time. Otherwise, or with
+ * {@code -Dbg.syllabifier.vector=false}, it runs a character at a time.
+ * Either way, the masks come out the same.
+ * <p>
+ * With the masks, scanning the text is mostly bit arithmetic: words are
+ * found a mask word at a time, and {@link Syllabifier#syllabifyInto(CharSequence,
+ * int, int, LetterMasks, int[])} jumps from vowel to vowel, and only looks
+ * at the consonant clusters between them.
+ * <p>
+ * Instances are meant to be reused, and are not thread-safe.
+ */
+public final class LetterMasks {
+
+    /** Set to false to classify a character at a time. */
+    public static final String VECTOR_PROPERTY = "bg.syllabifier.vector";
+
+    private final LetterScanner scanner;
+
+    private int length;
+
+    long[] letters = new long[0];
+    long[] marks = new long[0];
+    long[] vowels = new long[0];
+    long[] cyrillic = new long[0];
+
+    /** Masks classified with the fastest scanner available. */
+    public LetterMasks() {
+        this(LetterScanner.best());
+    }
+
+    LetterMasks(LetterScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    /** Masks classified a character at a time, e.g. for comparison. */
+    public static LetterMasks scalar() {
+        return new LetterMasks(LetterScanner.scalar());
+    }
+
+    /** Whether the masks are classified with SIMD code. */
+    public boolean isVectorized() {
+        return scanner.isVectorized();
+    }
+
+    /**
+     * Classifies text[0, length), replacing the previous masks.
+     */
+    public void classify(char[] text, int length) {
+        int nWords = (length + Long.SIZE - 1) >>> 6;
+        if (letters.length < nWords) {
+            int capacity = Math.max(nWords, 2 * letters.length);
+            letters = new long[capacity];
+            marks = new long[capacity];
+            vowels = new long[capacity];
+            cyrillic = new long[capacity];
+        }
+
+        scanner.scan(text, 0, length, letters, marks, vowels, cyrillic);
+        this.length = length;
+    }
+
+    /** The length of the text classified. */
+    public int length() {
+        return length;
+    }
+
+    public boolean isLetter(int i) {
+        return (letters[i >>> 6] & 1L << i) != 0;
+    }
+
+    /** Letters and the combining marks after them, like in {@link Syllabifier}. */
+    public boolean isWordChar(int i) {
+        return ((letters[i >>> 6] | marks[i >>> 6]) & 1L << i) != 0;
+    }
+
+    public boolean isVowel(int i) {
+        return (vowels[i >>> 6] & 1L << i) != 0;
+    }
+
+    /** The first letter in [from, length), or the length if there's none. */
+    public int nextLetter(int from) {
+        if (from >= length) return length;
+
+        int w = from >>> 6;
+        long bits = letters[w] & -1L << from;
+        while (bits == 0) {
+            if (++w << 6 >= length) return length;
+            bits = letters[w];
+        }
+
+        return Math.min(length, w << 6 | Long.numberOfTrailingZeros(bits));
+    }
+
+    /** The first character in [from, length) that's not a word character, or the length. */
+    public int nextNonWordChar(int from) {
+        if (from >= length) return length;
+
+        int w = from >>> 6;
+        long bits = ~(letters[w] | marks[w]) & -1L << from;
+        while (bits == 0) {
+            if (++w << 6 >= length) return length;
+            bits = ~(letters[w] | marks[w]);
+        }
+
+        return Math.min(length, w << 6 | Long.numberOfTrailingZeros(bits));
+    }
+
+    /** The first vowel in [from, to), or -1 if there's none. */
+    int nextVowel(int from, int to) {
+        if (from >= to) return -1;
+
+        int w = from >>> 6;
+        long bits = vowels[w] & -1L << from;
+        while (bits == 0) {
+            if (++w << 6 >= to) return -1;
+            bits = vowels[w];
+        }
+
+        int i = w << 6 | Long.numberOfTrailingZeros(bits);
+        return i < to ? i : -1;
+    }
+
+    /**
+     * Whether every character in [start, end) is in the Cyrillic block, or
+     * a combining mark.
+     */
+    public boolean isCyrillic(int start, int end) {
+        if (start >= end) return true;
+
+        int first = start >>> 6, last = (end - 1) >>> 6;
+        for (int w = first; w <= last; w++) {
+            long range = -1L;
+            if (w == first) range &= -1L << start;
+            if (w == last) range &= -1L >>> (Long.SIZE - 1 - ((end - 1) & 63));
+
+            if ((~cyrillic[w] & range) != 0) return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,113 @@
+package chernorizets.bg.syllabifier;
+
+import java.util.Arrays;
+
+/**
+ * The kernel behind {@link LetterMasks}: classifies characters into bit
+ * masks, 64 at a time.
+ * <p>
+ * This is the scalar version, one character at a time. Built with the
+ * {@code vector} Maven profile, there's also {@code VectorLetterScanner},
+ * which classifies 16 or 32 at a time with the incubating Vector API. It
+ * needs Java 17 and {@code --add-modules jdk.incubator.vector} to run, so
+ * it's only loaded reflectively, if it's there - and only used if it
+ * classifies every character the same as this one. Otherwise, or with
+ * {@code -Dbg.syllabifier.vector=false}, it's this one.
+ */
+class LetterScanner {
+
+    private static final String VECTOR_SCANNER_CLASS = "chernorizets.bg.syllabifier.VectorLetterScanner";
+
+    private static final LetterScanner SCALAR = new LetterScanner();
+
+    private static final LetterScanner BEST = loadBest();
+
+    static LetterScanner scalar() {
+        return SCALAR;
+    }
+
+    /** The vector scanner if it can be used, or the scalar one. */
+    static LetterScanner best() {
+        return BEST;
+    }
+
+    boolean isVectorized() {
+        return false;
+    }
+
+    /**
+     * Classifies text[from, to) - where from is a multiple of 64 - setting
+     * bit (i % 64) of word (i / 64) of each mask if character i is:
+     * <ul>
+     *     <li>letters - a letter</li>
+     *     <li>marks - a combining mark</li>
+     *     <li>vowels - a Bulgarian vowel, in either case</li>
+     *     <li>cyrillic - in the Cyrillic block, or a combining mark</li>
+     * </ul>
+     * The mask words covering [from, to) are overwritten, with the bits past
+     * {@code to} cleared.
+     */
+    void scan(char[] text, int from, int to, long[] letters, long[] marks, long[] vowels, long[] cyrillic) {
+        for (int base = from; base < to; base += Long.SIZE) {
+            long l = 0, m = 0, v = 0, c = 0;
+
+            int n = Math.min(Long.SIZE, to - base);
+            for (int k = 0; k < n; k++) {
+                char ch = text[base + k];
+                long bit = 1L << k;
+
+                if (Character.isLetter(ch)) l |= bit;
+                if (LetterClassifier.isCombiningMark(ch)) m |= bit;
+                if (LetterClassifier.isVowel(ch)) v |= bit;
+                if ((ch >= 'Ѐ' && ch <= 'ӿ') || LetterClassifier.isCombiningMark(ch)) c |= bit;
+            }
+
+            int w = base >>> 6;
+            letters[w] = l;
+            marks[w] = m;
+            vowels[w] = v;
+            cyrillic[w] = c;
+        }
+    }
+
+    private static LetterScanner loadBest() {
+        if (!Boolean.parseBoolean(System.getProperty(LetterMasks.VECTOR_PROPERTY, "true"))) return SCALAR;
+
+        LetterScanner vector;
+        try {
+            vector = (LetterScanner) Class.forName(VECTOR_SCANNER_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Not built with the vector profile, or the module isn't there.
+            return SCALAR;
+        }
+
+        return agreesWithScalar(vector) ? vector : SCALAR;
+    }
+
+    /*
+     * Whether a scanner classifies every character the same as the scalar
+     * one, over a text with every character in it, that ends in a partial
+     * block.
+     */
+    static boolean agreesWithScalar(LetterScanner scanner) {
+        int n = Character.MAX_VALUE + 1;
+
+        // Multiplying by an odd number permutes the characters, so the
+        // lanes see a mix of them, like in real text.
+        var text = new char[n + Long.SIZE - 1];
+        for (int i = 0; i < text.length; i++) text[i] = (char) (i * 0x9E37 + 1);
+
+        int nWords = (text.length + Long.SIZE - 1) / Long.SIZE;
+        long[][] expected = new long[4][nWords];
+        long[][] actual = new long[4][nWords];
+
+        SCALAR.scan(text, 0, text.length, expected[0], expected[1], expected[2], expected[3]);
+        scanner.scan(text, 0, text.length, actual[0], actual[1], actual[2], actual[3]);
+
+        for (int mask = 0; mask < 4; mask++) {
+            if (!Arrays.equals(expected[mask], actual[mask])) return false;
+        }
+
+        return true;
+    }
+}
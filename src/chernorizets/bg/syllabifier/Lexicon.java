@@ -0,0 +1,113 @@
+package chernorizets.bg.syllabifier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A precompiled dictionary of syllabified words, memory-mapped from a file
+ * built by {@link LexiconCompiler}. Lookups take time proportional to the
+ * length of the word, and use next to no heap, however big the lexicon is.
+ * <p>
+ * The file is a hash table of words:
+ * <pre>
+ *   header:  magic "BGSL", version, word count, table size (a power of 2)
+ *   table:   one int per slot - the record's offset in the record area plus 1, or 0 if empty
+ *   records: per word - the break mask (long), the length (byte), the lowercase letters (chars)
+ * </pre>
+ * Break masks are the same as in {@link SyllabifiedBatch}: bit <i>k</i> is
+ * set if a syllable starts at index <i>k</i> of the word, and bit 0 is always
+ * set. Hence a valid mask is never 0.
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class Lexicon {
+
+    static final int MAGIC = 0x4247534C; // "BGSL"
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+    /** Returned by {@link #lookup} for words not in the lexicon. */
+    public static final long NOT_FOUND = 0;
+
+    static final int MAX_WORD_LENGTH = Long.SIZE;
+
+    private final ByteBuffer buffer;
+    private final int wordCount;
+    private final int tableMask;
+    private final int recordsStart;
+
+    private Lexicon(ByteBuffer buffer) {
+        this.buffer = buffer;
+
+        if (buffer.getInt(0) != MAGIC) throw new IllegalArgumentException("Not a lexicon file");
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported lexicon version: " + buffer.getInt(4));
+        }
+
+        this.wordCount = buffer.getInt(8);
+        int tableSize = buffer.getInt(12);
+        this.tableMask = tableSize - 1;
+        this.recordsStart = HEADER_SIZE + tableSize * Integer.BYTES;
+    }
+
+    public static Lexicon open(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new Lexicon(buffer);
+        }
+    }
+
+    public int size() {
+        return wordCount;
+    }
+
+    /**
+     * Looks up the word occupying [start, end) of a character sequence,
+     * case-insensitively.
+     *
+     * @return the word's break mask, or {@link #NOT_FOUND}
+     */
+    public long lookup(CharSequence text, int start, int end) {
+        int len = end - start;
+        if (len == 0 || len > MAX_WORD_LENGTH) return NOT_FOUND;
+
+        for (int slot = hash(text, start, end) & tableMask; ; slot = (slot + 1) & tableMask) {
+            int offset = buffer.getInt(HEADER_SIZE + slot * Integer.BYTES);
+            if (offset == 0) return NOT_FOUND;
+
+            int record = recordsStart + offset - 1;
+            if (matches(record, text, start, end)) return buffer.getLong(record);
+        }
+    }
+
+    private boolean matches(int record, CharSequence text, int start, int end) {
+        int lenPos = record + Long.BYTES;
+        if ((buffer.get(lenPos) & 0xFF) != end - start) return false;
+
+        int charPos = lenPos + 1;
+        for (int i = start; i < end; i++, charPos += Character.BYTES) {
+            if (buffer.getChar(charPos) != LetterClassifier.toLowerCase(text.charAt(i))) return false;
+        }
+
+        return true;
+    }
+
+    /*
+     * FNV-1a over the lowercase letters. Shared by the compiler and the reader.
+     */
+    static int hash(CharSequence text, int start, int end) {
+        int h = 0x811C9DC5;
+
+        for (int i = start; i < end; i++) {
+            h ^= LetterClassifier.toLowerCase(text.charAt(i));
+            h *= 0x01000193;
+        }
+
+        return h ^ (h >>> 16);
+    }
+}
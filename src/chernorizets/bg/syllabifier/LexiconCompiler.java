@@ -0,0 +1,179 @@
+package chernorizets.bg.syllabifier;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Offline build step for a {@link Lexicon}: runs the syllabifier over
+ * a whole word list, applies manually curated overrides, and writes out
+ * the result.
+ * <p>
+ * The word list has one word per line; anything after the first
+ * whitespace on a line - e.g. a frequency count - is ignored. The overrides
+ * file has a word and its syllabification, separated by hyphens, per line:
+ * <pre>
+ *   тесто  тес-то
+ * </pre>
+ * In both files, blank lines are ignored, and '#' starts a comment.
+ * Overridden words don't have to be in the word list.
+ */
+public class LexiconCompiler {
+
+    private final Syllabifier syllabifier;
+
+    public LexiconCompiler(Syllabifier syllabifier) {
+        this.syllabifier = syllabifier;
+    }
+
+    /**
+     * @return the number of words written
+     */
+    public int compile(Path wordList, Path overridesFile, Path output) throws IOException {
+        var words = readWords(wordList);
+        var overrides = overridesFile == null ? Map.<String, Long>of() : readOverrides(overridesFile);
+
+        var batch = new BatchSyllabifier(syllabifier, ForkJoinPool.commonPool())
+                .syllabifyAll(words);
+
+        var masks = new LinkedHashMap<String, Long>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.syllableCount(i) > 0) masks.put(batch.word(i), batch.masks[i]);
+        }
+
+        masks.putAll(overrides);
+
+        write(masks, output);
+        return masks.size();
+    }
+
+    static void write(Map<String, Long> masks, Path output) throws IOException {
+        // Keep the table at most half full, so that probe sequences stay short.
+        int tableSize = Integer.highestOneBit(Math.max(1, masks.size()) * 4 - 1);
+
+        var table = new int[tableSize];
+        int recordOffset = 0;
+
+        for (var word : masks.keySet()) {
+            int slot = Lexicon.hash(word, 0, word.length()) & (tableSize - 1);
+            while (table[slot] != 0) slot = (slot + 1) & (tableSize - 1);
+
+            table[slot] = recordOffset + 1;
+            recordOffset += Long.BYTES + 1 + word.length() * Character.BYTES;
+        }
+
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output), 1 << 16))) {
+            out.writeInt(Lexicon.MAGIC);
+            out.writeInt(Lexicon.VERSION);
+            out.writeInt(masks.size());
+            out.writeInt(tableSize);
+
+            for (int offset : table) out.writeInt(offset);
+
+            for (var entry : masks.entrySet()) {
+                out.writeLong(entry.getValue());
+                out.writeByte(entry.getKey().length());
+                out.writeChars(entry.getKey());
+            }
+        }
+    }
+
+    /*
+     * Reads words in the form the lexicon keys them on: lowercase, without
+     * forced break markers, and short enough for a break mask.
+     */
+    static List<String> readWords(Path wordList) throws IOException {
+        var words = new ArrayList<String>();
+
+        for (var line : Files.readAllLines(wordList, StandardCharsets.UTF_8)) {
+            var fields = contentOf(line);
+            if (fields.isEmpty()) continue;
+
+            var word = Syllabifier.normalizeWord(fields.split("\\s+")[0]);
+            if (word.length() <= Lexicon.MAX_WORD_LENGTH && word.indexOf(ForcedBreak.MARKER) == -1) {
+                words.add(word);
+            }
+        }
+
+        return words;
+    }
+
+    static Map<String, Long> readOverrides(Path overridesFile) throws IOException {
+        var overrides = new LinkedHashMap<String, Long>();
+
+        int lineNo = 0;
+        for (var line : Files.readAllLines(overridesFile, StandardCharsets.UTF_8)) {
+            ++lineNo;
+
+            var content = contentOf(line);
+            if (content.isEmpty()) continue;
+
+            var fields = content.split("\\s+");
+            if (fields.length != 2) {
+                throw new IllegalArgumentException(String.format(
+                        "%s:%d: expected a word and its syllabification", overridesFile, lineNo));
+            }
+
+            // Folded the same way as words looked up in the lexicon, whatever
+            // the default locale
+            var word = Syllabifier.normalizeWord(fields[0]);
+            var syllables = Syllabifier.normalizeWord(fields[1]).split("-");
+
+            if (!String.join("", syllables).equals(word) || word.length() > Lexicon.MAX_WORD_LENGTH) {
+                throw new IllegalArgumentException(String.format(
+                        "%s:%d: '%s' is not a syllabification of '%s'", overridesFile, lineNo, fields[1], fields[0]));
+            }
+
+            long mask = 1L;
+            int onset = 0;
+            for (int i = 0; i < syllables.length - 1; i++) {
+                onset += syllables[i].length();
+                mask |= 1L << onset;
+            }
+
+            overrides.put(word, mask);
+        }
+
+        return overrides;
+    }
+
+    private static String contentOf(String line) {
+        int comment = line.indexOf('#');
+        return (comment == -1 ? line : line.substring(0, comment)).strip();
+    }
+
+    /**
+     * Usage: LexiconCompiler WORD_LIST [--overrides=FILE] OUTPUT
+     */
+    public static void main(String ... args) throws IOException {
+        Path overrides = null;
+        var paths = new ArrayList<Path>();
+
+        for (var arg : args) {
+            if (arg.startsWith("--overrides=")) {
+                overrides = Path.of(arg.substring("--overrides=".length()));
+            } else {
+                paths.add(Path.of(arg));
+            }
+        }
+
+        if (paths.size() != 2) {
+            System.err.println("Usage: LexiconCompiler WORD_LIST [--overrides=FILE] OUTPUT");
+            System.exit(2);
+        }
+
+        long t0 = System.nanoTime();
+        int nWords = new LexiconCompiler(new Syllabifier()).compile(paths.get(0), overrides, paths.get(1));
+
+        System.err.printf("Compiled %,d words into %s in %.2f s%n",
+                nWords, paths.get(1), (System.nanoTime() - t0) / 1e9);
+    }
+}
@@ -0,0 +1,55 @@
+package chernorizets.bg.syllabifier;
+
+import java.util.List;
+
+/**
+ * Syllabifies words by looking them up in a precompiled {@link Lexicon},
+ * falling back to the rule engine for words that aren't in it.
+ * <p>
+ * Since the lexicon is built with manually curated overrides applied,
+ * its answers win over the rules. This class is thread-safe.
+ */
+public class LexiconSyllabifier {
+
+    private final Lexicon lexicon;
+
+    private final Syllabifier fallback;
+
+    public LexiconSyllabifier(Lexicon lexicon, Syllabifier fallback) {
+        this.lexicon = lexicon;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Same as {@link Syllabifier#syllabify(String)}.
+     */
+    public List<String> syllabify(String word) {
+        var norm = Syllabifier.normalizeWord(word);
+        if (norm.isEmpty()) return List.of();
+
+        var breakOffsets = new int[norm.length()];
+        int nSyllables = syllabifyInto(norm, 0, norm.length(), breakOffsets);
+        if (nSyllables == 0) return List.of();
+
+        return Syllabifier.toSyllables(norm, nSyllables, breakOffsets);
+    }
+
+    /**
+     * Same as {@link Syllabifier#syllabifyInto(CharSequence, int, int, int[])}.
+     */
+    public int syllabifyInto(CharSequence text, int start, int end, int[] breakOffsets) {
+        start = Syllabifier.wordStart(text, start, end);
+        end = Syllabifier.wordEnd(text, start, end);
+        if (start == end) return 0;
+
+        long mask = lexicon.lookup(text, start, end);
+        if (mask == Lexicon.NOT_FOUND) return fallback.syllabifyInto(text, start, end, breakOffsets);
+
+        int nBreaks = 0;
+        for (long m = mask & ~1L; m != 0; m &= m - 1) {
+            breakOffsets[nBreaks++] = start + Long.numberOfTrailingZeros(m);
+        }
+
+        return nBreaks + 1;
+    }
+}
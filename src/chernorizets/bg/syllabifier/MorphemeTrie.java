@@ -0,0 +1,184 @@
+package chernorizets.bg.syllabifier;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A set of morphemes compiled into a trie, for finding all of them at
+ * one end of a word in a single pass. The cost of a lookup depends on the
+ * length of the longest match, and not on the number of morphemes.
+ * <p>
+ * A forward trie matches morphemes at the start of a word (prefixes),
+ * a reverse one matches them at the end (suffixes).
+ */
+final class MorphemeTrie {
+
+    // Transitions are on lowercase Cyrillic letters, 'а' through 'џ',
+    // which includes 'ѝ' and 'ў'.
+    private static final char ALPHABET_START = 'а';
+    private static final int ALPHABET_SIZE = 'џ' - ALPHABET_START + 1;
+
+    // Morphemes can't be longer than what a length bit mask can represent
+    static final int MAX_LENGTH = 63;
+
+    private final boolean reverse;
+
+    // transitions[state * ALPHABET_SIZE + letter] is the next state, or 0 for none.
+    // State 0 is the root, which is never a transition target.
+    private final int[] transitions;
+
+    private final boolean[] terminal;
+
+    private MorphemeTrie(boolean reverse, int[] transitions, boolean[] terminal) {
+        this.reverse = reverse;
+        this.transitions = transitions;
+        this.terminal = terminal;
+    }
+
+    static MorphemeTrie forward(List<String> morphemes) {
+        return compile(morphemes, false);
+    }
+
+    static MorphemeTrie reverse(List<String> morphemes) {
+        return compile(morphemes, true);
+    }
+
+    /**
+     * Finds all morphemes at the start (or end, if reverse) of the word
+     * occupying [start, end) of a character sequence. Letters are compared
+     * case-insensitively, and combining marks are skipped.
+     *
+     * @param maxLength the maximum length of a match, in characters - marks
+     * included
+     *
+     * @return a bit mask where bit <i>k</i> is set if there is a morpheme
+     * of length <i>k</i>
+     */
+    long matchLengths(CharSequence word, int start, int end, int maxLength) {
+        int limit = Math.min(Math.min(maxLength, end - start), MAX_LENGTH);
+        long lengths = 0;
+
+        int state = 0;
+        for (int len = 1; len <= limit; len++) {
+            char ch = LetterClassifier.toLowerCase(word.charAt(reverse ? end - len : start + len - 1));
+            if (LetterClassifier.isCombiningMark(ch)) continue;
+
+            int letter = ch - ALPHABET_START;
+            if (letter < 0 || letter >= ALPHABET_SIZE) break;
+
+            state = transitions[state * ALPHABET_SIZE + letter];
+            if (state == 0) break;
+
+            if (terminal[state]) lengths |= 1L << len;
+        }
+
+        return lengths;
+    }
+
+    /**
+     * Same as {@link #matchLengths}, for a forward trie, but also finds
+     * morphemes stacked after the ones at the start - e.g. без + из in
+     * безизразен - by walking the trie again from the end of every match.
+     * Only the single morphemes need to be listed, not their combinations.
+     *
+     * @return a bit mask where bit <i>k</i> is set if a morpheme, alone or
+     * stacked on others, ends <i>k</i> characters into the word
+     */
+    long stackedMatchLengths(CharSequence word, int start, int end, int maxLength) {
+        int limit = Math.min(maxLength, MAX_LENGTH);
+
+        long lengths = 0;
+        long pending = matchLengths(word, start, end, limit);
+        while (pending != 0) {
+            int len = Long.numberOfTrailingZeros(pending);
+            pending &= pending - 1;
+
+            lengths |= 1L << len;
+            pending |= matchLengths(word, start + len, end, limit - len) << len;
+        }
+
+        return lengths;
+    }
+
+    private static MorphemeTrie compile(List<String> morphemes, boolean reverse) {
+        // A loop rather than a stream, which would cost startup time
+        int maxStates = 1;
+        for (var morpheme : morphemes) maxStates += morpheme.length();
+
+        var transitions = new int[maxStates * ALPHABET_SIZE];
+        var terminal = new boolean[maxStates];
+        int nStates = 1;
+
+        for (String morpheme : morphemes) {
+            int state = 0;
+
+            for (int i = 0; i < morpheme.length(); i++) {
+                char ch = morpheme.charAt(reverse ? morpheme.length() - 1 - i : i);
+                int idx = state * ALPHABET_SIZE + (ch - ALPHABET_START);
+
+                if (transitions[idx] == 0) transitions[idx] = nStates++;
+                state = transitions[idx];
+            }
+
+            terminal[state] = true;
+        }
+
+        return new MorphemeTrie(reverse,
+                Arrays.copyOf(transitions, nStates * ALPHABET_SIZE),
+                Arrays.copyOf(terminal, nStates));
+    }
+
+    /**
+     * Reads a morpheme list bundled next to this class. The format is one
+     * morpheme per line, lowercase. Blank lines are ignored, and '#' starts
+     * a comment.
+     */
+    static List<String> load(String resourceName) {
+        try (var in = MorphemeTrie.class.getResourceAsStream(resourceName)) {
+            if (in == null) throw new IllegalStateException("Missing morpheme list: " + resourceName);
+
+            var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            return parse(reader, resourceName);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<String> parse(BufferedReader reader, String sourceName) throws IOException {
+        var morphemes = new ArrayList<String>();
+
+        int lineNo = 0;
+        for (String line; (line = reader.readLine()) != null; ) {
+            ++lineNo;
+
+            int comment = line.indexOf('#');
+            var morpheme = (comment == -1 ? line : line.substring(0, comment)).strip();
+            if (morpheme.isEmpty()) continue;
+
+            if (morpheme.length() > MAX_LENGTH) {
+                throw new IllegalArgumentException(String.format(
+                        "%s:%d: morpheme longer than %d letters", sourceName, lineNo, MAX_LENGTH));
+            }
+
+            for (int i = 0; i < morpheme.length(); i++) {
+                int letter = morpheme.charAt(i) - ALPHABET_START;
+
+                if (letter < 0 || letter >= ALPHABET_SIZE) {
+                    throw new IllegalArgumentException(String.format(
+                            "%s:%d: not a lowercase Bulgarian letter: '%c'", sourceName, lineNo, morpheme.charAt(i)));
+                }
+            }
+
+            morphemes.add(morpheme);
+        }
+
+        return Collections.unmodifiableList(morphemes);
+    }
+}
@@ -0,0 +1,289 @@
+package chernorizets.bg.syllabifier;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Derives Liang-style {@link HyphenationPatterns} from the behavior of
+ * {@link Syllabifier} over a word list, the way TeX's patgen does from a
+ * hyphenated dictionary.
+ * <p>
+ * Patterns are generated in levels. Odd levels add patterns that allow
+ * breaks the rules make but the patterns so far miss; even levels add
+ * patterns that inhibit breaks the patterns so far make, but the rules
+ * don't. Within a level, candidate patterns are tried from the shortest
+ * to the longest. A candidate is kept if it fixes enough gaps, compared to
+ * the ones it would get wrong:
+ * <pre>
+ *   good - badWeight * bad &gt;= threshold
+ * </pre>
+ * Higher levels override lower ones, so mistakes made at one level can be
+ * fixed at the next.
+ */
+public class PatternGenerator {
+
+    static final int MAX_LEVEL = 9;
+
+    private final Syllabifier syllabifier;
+
+    private final int levels;
+    private final int maxPatternLength;
+    private final int badWeight;
+    private final int threshold;
+
+    public PatternGenerator(Syllabifier syllabifier) {
+        this(syllabifier, 6, 6, 4, 1);
+    }
+
+    /**
+     * @param levels the number of levels, up to 9
+     * @param maxPatternLength the maximum number of letters in a pattern,
+     *                         counting word boundaries, up to 9
+     */
+    public PatternGenerator(Syllabifier syllabifier, int levels, int maxPatternLength, int badWeight, int threshold) {
+        if (levels < 1 || levels > MAX_LEVEL) throw new IllegalArgumentException("Levels must be 1 to 9");
+        if (maxPatternLength < 1 || maxPatternLength > 9) {
+            throw new IllegalArgumentException("Pattern length must be 1 to 9");
+        }
+
+        this.syllabifier = syllabifier;
+        this.levels = levels;
+        this.maxPatternLength = maxPatternLength;
+        this.badWeight = badWeight;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Generates patterns from the syllabifications of a list of lowercase
+     * words. Words with anything but Bulgarian letters in them are skipped.
+     */
+    public HyphenationPatterns generate(List<String> words) {
+        var batch = new BatchSyllabifier(syllabifier, ForkJoinPool.commonPool())
+                .syllabifyAll(patternWords(words));
+
+        // Pattern letters -> gap values, kept sorted for a stable export
+        var patternGaps = new TreeMap<String, byte[]>();
+        var patterns = HyphenationPatterns.compile(List.of());
+
+        for (int level = 1; level <= levels; level++) {
+            boolean hyphenating = level % 2 == 1;
+
+            for (int length = 1; length <= maxPatternLength; length++) {
+                var counts = countCandidates(batch, patterns, hyphenating, length);
+
+                boolean added = false;
+                for (var candidate : counts.entrySet()) {
+                    int good = candidate.getValue()[0], bad = candidate.getValue()[1];
+                    if (good == 0 || good - badWeight * bad < threshold) continue;
+
+                    var key = candidate.getKey();
+                    var letters = key.substring(0, length);
+                    int gap = key.charAt(length) - '0';
+
+                    patternGaps.computeIfAbsent(letters, l -> new byte[l.length() + 1])[gap] = (byte) level;
+                    added = true;
+                }
+
+                if (added) patterns = HyphenationPatterns.compile(toTeX(patternGaps));
+            }
+        }
+
+        return patterns;
+    }
+
+    /*
+     * For every gap the current patterns get wrong in the direction of this
+     * level, counts the candidate patterns of the given length covering it.
+     * Keys are the pattern's letters followed by the gap's index within it;
+     * values are {good, bad} counts.
+     */
+    private static Map<String, int[]> countCandidates(SyllabifiedBatch batch, HyphenationPatterns patterns,
+                                                      boolean hyphenating, int length) {
+        var counts = new HashMap<String, int[]>();
+
+        for (int w = 0; w < batch.size(); w++) {
+            long mask = batch.masks[w];
+            if (mask == 0) continue;
+
+            var word = batch.word(w);
+            var dotted = "." + word + ".";
+            var gaps = patterns.gapValues(word, 0, word.length());
+
+            // Gap k + 1 of ".word." is right before letter k of the word
+            for (int k = 1; k < word.length(); k++) {
+                boolean broken = (gaps[k + 1] & 1) != 0;
+                if (broken == hyphenating) continue;
+
+                boolean wanted = ((mask >>> k) & 1) != 0;
+                int outcome = wanted == hyphenating ? 0 : 1;
+
+                for (int gap = 0; gap <= length; gap++) {
+                    int from = k + 1 - gap;
+                    if (from < 0 || from + length > dotted.length()) continue;
+
+                    var key = dotted.substring(from, from + length) + (char) ('0' + gap);
+                    counts.computeIfAbsent(key, c -> new int[2])[outcome]++;
+                }
+            }
+        }
+
+        return counts;
+    }
+
+    private static List<String> toTeX(Map<String, byte[]> patternGaps) {
+        var patterns = new ArrayList<String>(patternGaps.size());
+
+        for (var entry : patternGaps.entrySet()) {
+            var letters = entry.getKey();
+            var gaps = entry.getValue();
+            var pattern = new StringBuilder();
+
+            for (int i = 0; i <= letters.length(); i++) {
+                if (gaps[i] != 0) pattern.append((char) ('0' + gaps[i]));
+                if (i < letters.length()) pattern.append(letters.charAt(i));
+            }
+
+            patterns.add(pattern.toString());
+        }
+
+        return patterns;
+    }
+
+    /*
+     * Words patterns can be derived from: Bulgarian letters only, and short
+     * enough for a break mask.
+     */
+    static List<String> patternWords(List<String> words) {
+        var result = new ArrayList<String>(words.size());
+
+        for (var word : words) {
+            if (word.isEmpty() || word.length() > SyllabifiedBatch.MAX_MASK_LENGTH) continue;
+
+            boolean letters = true;
+            for (int i = 0; i < word.length() && letters; i++) {
+                char ch = word.charAt(i);
+                letters = ch >= 'а' && ch <= 'џ';
+            }
+
+            if (letters) result.add(word);
+        }
+
+        return result;
+    }
+
+    /**
+     * Usage: PatternGenerator WORD_LIST OUTPUT [--format=tex|plain] [--levels=N]
+     * [--max-length=N] [--bad-weight=N] [--threshold=N]
+     * <p>
+     * Generates patterns from a word list in the format {@link LexiconCompiler}
+     * takes, writes them out, and reports on standard error how closely they
+     * agree with the rules on the same words, and how fast they are.
+     */
+    public static void main(String ... args) throws IOException {
+        var paths = new ArrayList<Path>();
+        var format = "tex";
+        int levels = 6, maxLength = 6, badWeight = 4, threshold = 1;
+
+        for (var arg : args) {
+            if (arg.startsWith("--format=")) format = arg.substring("--format=".length());
+            else if (arg.startsWith("--levels=")) levels = Integer.parseInt(arg.substring("--levels=".length()));
+            else if (arg.startsWith("--max-length=")) maxLength = Integer.parseInt(arg.substring("--max-length=".length()));
+            else if (arg.startsWith("--bad-weight=")) badWeight = Integer.parseInt(arg.substring("--bad-weight=".length()));
+            else if (arg.startsWith("--threshold=")) threshold = Integer.parseInt(arg.substring("--threshold=".length()));
+            else paths.add(Path.of(arg));
+        }
+
+        if (paths.size() != 2 || !(format.equals("tex") || format.equals("plain"))) {
+            System.err.println("Usage: PatternGenerator WORD_LIST OUTPUT [--format=tex|plain] [--levels=N] "
+                    + "[--max-length=N] [--bad-weight=N] [--threshold=N]");
+            System.exit(2);
+        }
+
+        var syllabifier = new Syllabifier();
+        var words = patternWords(LexiconCompiler.readWords(paths.get(0)));
+
+        long t0 = System.nanoTime();
+        var patterns = new PatternGenerator(syllabifier, levels, maxLength, badWeight, threshold).generate(words);
+
+        System.err.printf("Generated %,d patterns from %,d words in %.2f s%n",
+                patterns.size(), words.size(), (System.nanoTime() - t0) / 1e9);
+
+        try (var out = Files.newBufferedWriter(paths.get(1), StandardCharsets.UTF_8)) {
+            if (format.equals("tex")) patterns.writeTeX(out);
+            else patterns.writePlain(out);
+        }
+
+        reportAgreement(syllabifier, patterns, words);
+        reportSpeed(syllabifier, patterns, words);
+    }
+
+    private static void reportAgreement(Syllabifier syllabifier, HyphenationPatterns patterns, List<String> words) {
+        var ruleBreaks = new int[SyllabifiedBatch.MAX_MASK_LENGTH];
+        var patternBreaks = new int[SyllabifiedBatch.MAX_MASK_LENGTH];
+
+        int sameWords = 0, correct = 0, missed = 0, spurious = 0;
+
+        for (var word : words) {
+            long ruleMask = toMask(ruleBreaks, syllabifier.syllabifyInto(word, 0, word.length(), ruleBreaks));
+            long patternMask = toMask(patternBreaks, patterns.syllabifyInto(word, 0, word.length(), patternBreaks));
+
+            if (ruleMask == patternMask) sameWords++;
+            correct += Long.bitCount(ruleMask & patternMask);
+            missed += Long.bitCount(ruleMask & ~patternMask);
+            spurious += Long.bitCount(~ruleMask & patternMask);
+        }
+
+        System.err.printf("Agreement with the rules: %.2f%% of words; breaks: %,d correct, %,d missed, %,d spurious%n",
+                100.0 * sameWords / Math.max(1, words.size()), correct, missed, spurious);
+    }
+
+    // Breaks only - bit 0 isn't set
+    private static long toMask(int[] breakOffsets, int nSyllables) {
+        long mask = 0;
+        for (int i = 0; i < nSyllables - 1; i++) mask |= 1L << breakOffsets[i];
+
+        return mask;
+    }
+
+    private static void reportSpeed(Syllabifier syllabifier, HyphenationPatterns patterns, List<String> words) {
+        double rulesNanos = nanosPerWord(words, syllabifier::syllabifyInto);
+        double patternsNanos = nanosPerWord(words, patterns::syllabifyInto);
+
+        System.err.printf("Speed: rules %.1f ns/word, patterns %.1f ns/word (%.2fx)%n",
+                rulesNanos, patternsNanos, rulesNanos / patternsNanos);
+    }
+
+    private interface SyllabifyInto {
+        int apply(CharSequence text, int start, int end, int[] breakOffsets);
+    }
+
+    private static double nanosPerWord(List<String> words, SyllabifyInto engine) {
+        var breakOffsets = new int[SyllabifiedBatch.MAX_MASK_LENGTH];
+
+        // About two million words, whatever the size of the list. The first
+        // half of the rounds is warmup.
+        int rounds = Math.max(10, 2_000_000 / Math.max(1, words.size()));
+        long nanos = 0;
+        int sink = 0;
+
+        for (int round = 0; round < rounds; round++) {
+            long t0 = System.nanoTime();
+            for (var word : words) sink += engine.apply(word, 0, word.length(), breakOffsets);
+
+            if (round >= rounds / 2) nanos += System.nanoTime() - t0;
+        }
+
+        // Keeps the JIT from eliminating the calls
+        if (sink == 42) System.err.print("");
+
+        return (double) nanos / ((long) (rounds - rounds / 2) * Math.max(1, words.size()));
+    }
+}
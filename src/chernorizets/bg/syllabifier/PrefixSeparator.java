@@ -1,9 +1,8 @@
 package chernorizets.bg.syllabifier;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
-import static chernorizets.bg.syllabifier.SonorityModel.getSonorityRank;
 
 /**
  * This class brings morphological prefix awareness to syllabification.
@@ -19,29 +18,10 @@ class PrefixSeparator {
      * by another consonant of a higher sonority in some words. In such cases,
      * naive syllable breaking would chop off the prefix's last consonant, and
      * glue it to the onset of the next syllable.
+     * <p>
+     * The list is maintained in the {@code prefixes.txt} data file.
      */
-    static final List<String> PREFIXES = Arrays.asList(
-            // без- family
-            "без",
-
-            // из- family
-            "безиз", "наиз", "поиз", "произ", "преиз", "неиз", "из",
-
-            // въз- family
-            "безвъз", "превъз", "невъз", "въз",
-
-            // раз- family
-            "безраз", "предраз", "пораз", "нараз", "прераз", "нераз", "раз",
-
-            // от- family
-            "неот", "поот", "от",
-
-            // ending in fricatives
-            "екс", "таз",
-
-            // ending in stops
-            "пред"
-    );
+    static final List<String> PREFIXES = MorphemeTrie.load("prefixes.txt");
 
     /**
      * Finds the (zero-based) separation points between
@@ -60,21 +40,53 @@ class PrefixSeparator {
      * are handled by the sonority model. A non-zero list of string indices otherwise
      */
     static List<Integer> findSeparationPoints(String word) {
-        return PREFIXES.stream()
-                .filter(word::startsWith)
-                .filter(pref -> followedByHigherSonorityCons(pref, word))
-                .map(String::length)
-                .collect(Collectors.toList());
+        long mask = findSeparationMask(word, 0, word.length());
+
+        var points = new ArrayList<Integer>();
+        for (long m = mask; m != 0; m &= m - 1) {
+            points.add(Long.numberOfTrailingZeros(m));
+        }
+
+        return points;
+    }
+
+    /**
+     * Allocation-free variant of {@link #findSeparationPoints(String)} for
+     * the word occupying [start, end) of a character sequence. Letters are
+     * compared case-insensitively.
+     *
+     * @return a bit mask where bit <i>k</i> is set if there is a separation
+     * point at index <i>start + k</i>
+     */
+    static long findSeparationMask(CharSequence word, int start, int end) {
+        return findSeparationMask(RuleSet.bundled(), word, start, end);
+    }
+
+    /**
+     * Same as {@link #findSeparationMask(CharSequence, int, int)}, with the
+     * prefixes and sonority ranks of a rule set.
+     */
+    static long findSeparationMask(RuleSet rules, CharSequence word, int start, int end) {
+        // A prefix must be followed by at least one more letter
+        long prefixLengths = rules.prefixes.stackedMatchLengths(word, start, end, end - start - 1);
+        long mask = 0;
+
+        for (long m = prefixLengths; m != 0; m &= m - 1) {
+            int len = Long.numberOfTrailingZeros(m);
+            if (followedByHigherSonorityCons(rules, word, start + len)) mask |= 1L << len;
+        }
+
+        return mask;
     }
 
-    private static boolean followedByHigherSonorityCons(String prefix, String word) {
-        char prefixLastChar = prefix.charAt(prefix.length() - 1);
-        char firstCharAfterPrefix = word.charAt(prefix.length());
+    private static boolean followedByHigherSonorityCons(RuleSet rules, CharSequence word, int separationPoint) {
+        char prefixLastChar = LetterClassifier.toLowerCase(word.charAt(separationPoint - 1));
+        char firstCharAfterPrefix = LetterClassifier.toLowerCase(word.charAt(separationPoint));
 
         // Prefixes followed by vowels do, in fact, get broken up.
         if (LetterClassifier.isVowel(firstCharAfterPrefix)) return false;
 
-        return getSonorityRank(prefixLastChar) < getSonorityRank(firstCharAfterPrefix);
+        return rules.sonorityRank(prefixLastChar) < rules.sonorityRank(firstCharAfterPrefix);
     }
 
     public static void main(String ... args) {
@@ -0,0 +1,216 @@
+package chernorizets.bg.syllabifier;
+
+import jdk.jfr.FlightRecorder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Per-rule counts and latency histograms for the syllable break decisions
+ * {@link Syllabifier} makes - which rule decided each break, and how long
+ * it took to decide.
+ * <p>
+ * Collection is off by default, and is turned on for the life of the JVM
+ * with {@code -Dbg.syllabifier.metrics=true}. The flag is read once into
+ * a constant, so when it's off, the JIT compiles the instrumentation away
+ * entirely. When it's on:
+ * <ul>
+ *     <li>the metrics are exposed over JMX, as {@value #OBJECT_NAME}</li>
+ *     <li>a {@code bg.syllabifier.RuleStatistics} JFR event with each rule's
+ *     totals is emitted every second during a recording</li>
+ *     <li>a {@code bg.syllabifier.BreakDecision} JFR event is emitted per
+ *     decision, if enabled in the recording's settings - it's off by
+ *     default, as there's one for nearly every syllable</li>
+ * </ul>
+ * Latencies are bucketed by powers of 2: bucket <i>k</i> counts decisions
+ * that took less than 2<sup><i>k</i></sup> ns, and at least half that.
+ * This class is thread-safe.
+ */
+public final class RuleMetrics implements RuleMetricsMXBean {
+
+    public static final String PROPERTY = "bg.syllabifier.metrics";
+
+    public static final String OBJECT_NAME = "chernorizets.bg.syllabifier:type=RuleMetrics";
+
+    static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+    private static final int N_BUCKETS = Long.SIZE;
+
+    private static final RuleMetrics INSTANCE = new RuleMetrics();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                // E.g. already registered by a copy of this class in another
+                // class loader. The metrics are still there, just not over JMX.
+            }
+
+            FlightRecorder.addPeriodicEvent(RuleStatisticsEvent.class, INSTANCE::emitStatistics);
+        }
+    }
+
+    private final LongAdder[] counts = newAdders(BreakRule.values().length);
+    private final LongAdder[] nanos = newAdders(BreakRule.values().length);
+    private final LongAdder[][] histograms = new LongAdder[BreakRule.values().length][];
+
+    private RuleMetrics() {
+        for (int i = 0; i < histograms.length; i++) histograms[i] = newAdders(N_BUCKETS);
+    }
+
+    private static LongAdder[] newAdders(int n) {
+        var adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) adders[i] = new LongAdder();
+
+        return adders;
+    }
+
+    public static RuleMetrics get() {
+        return INSTANCE;
+    }
+
+    /*
+     * Records a decision on the break between two vowels, for the word
+     * occupying [start, end) of a text.
+     */
+    void record(BreakRule rule, long elapsedNanos, CharSequence text, int start, int end, int onset) {
+        int r = rule.ordinal();
+
+        counts[r].increment();
+        nanos[r].add(elapsedNanos);
+        histograms[r][bucket(elapsedNanos)].increment();
+
+        var event = new BreakDecisionEvent();
+        if (event.shouldCommit()) {
+            event.rule = rule.name();
+            event.word = text.subSequence(start, end).toString();
+            event.onset = onset - start;
+            event.decisionNanos = elapsedNanos;
+            event.commit();
+        }
+    }
+
+    private static int bucket(long nanos) {
+        return Math.min(Long.SIZE - Long.numberOfLeadingZeros(Math.max(0, nanos)), N_BUCKETS - 1);
+    }
+
+    public long count(BreakRule rule) {
+        return counts[rule.ordinal()].sum();
+    }
+
+    public long totalNanos(BreakRule rule) {
+        return nanos[rule.ordinal()].sum();
+    }
+
+    /**
+     * The latency histogram of a rule's decisions, see the class comment.
+     */
+    public long[] histogram(BreakRule rule) {
+        var histogram = new long[N_BUCKETS];
+        for (int k = 0; k < N_BUCKETS; k++) histogram[k] = histograms[rule.ordinal()][k].sum();
+
+        return histogram;
+    }
+
+    /**
+     * The upper bound of the bucket holding the given quantile of a rule's
+     * decision latencies, or 0 if there were no decisions.
+     */
+    public long quantileNanos(BreakRule rule, double quantile) {
+        var histogram = histogram(rule);
+
+        long total = 0;
+        for (long n : histogram) total += n;
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int k = 0; k < N_BUCKETS; k++) {
+            seen += histogram[k];
+            if (seen >= rank) return 1L << k;
+        }
+
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Override
+    public Map<String, Long> getDecisionCounts() {
+        return byRule(this::count);
+    }
+
+    @Override
+    public Map<String, Long> getTotalNanos() {
+        return byRule(this::totalNanos);
+    }
+
+    @Override
+    public Map<String, Double> getMeanNanos() {
+        var means = new LinkedHashMap<String, Double>();
+        for (var rule : BreakRule.values()) {
+            long n = count(rule);
+            means.put(rule.name(), n == 0 ? 0.0 : (double) totalNanos(rule) / n);
+        }
+
+        return means;
+    }
+
+    @Override
+    public Map<String, Long> getP50Nanos() {
+        return byRule(rule -> quantileNanos(rule, 0.5));
+    }
+
+    @Override
+    public Map<String, Long> getP99Nanos() {
+        return byRule(rule -> quantileNanos(rule, 0.99));
+    }
+
+    @Override
+    public void reset() {
+        for (int r = 0; r < counts.length; r++) {
+            counts[r].reset();
+            nanos[r].reset();
+            for (var bucket : histograms[r]) bucket.reset();
+        }
+    }
+
+    private static Map<String, Long> byRule(ToLongFunction<BreakRule> metric) {
+        var values = new LinkedHashMap<String, Long>();
+        for (var rule : BreakRule.values()) values.put(rule.name(), metric.applyAsLong(rule));
+
+        return values;
+    }
+
+    private void emitStatistics() {
+        for (var rule : BreakRule.values()) {
+            var event = new RuleStatisticsEvent();
+            event.rule = rule.name();
+            event.decisions = count(rule);
+            event.totalNanos = totalNanos(rule);
+            event.p99Nanos = quantileNanos(rule, 0.99);
+            event.commit();
+        }
+    }
+
+    @Override
+    public String toString() {
+        var summary = new EnumMap<BreakRule, String>(BreakRule.class);
+        for (var rule : BreakRule.values()) {
+            long n = count(rule);
+            if (n > 0) summary.put(rule, String.format("%d (mean %.0f ns)", n, (double) totalNanos(rule) / n));
+        }
+
+        return "RuleMetrics" + summary;
+    }
+}
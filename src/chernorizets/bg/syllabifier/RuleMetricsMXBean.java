@@ -0,0 +1,26 @@
+package chernorizets.bg.syllabifier;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link RuleMetrics}, registered as
+ * {@value RuleMetrics#OBJECT_NAME}. Maps are keyed on {@link BreakRule} names.
+ */
+public interface RuleMetricsMXBean {
+
+    boolean isEnabled();
+
+    Map<String, Long> getDecisionCounts();
+
+    Map<String, Long> getTotalNanos();
+
+    Map<String, Double> getMeanNanos();
+
+    /** Upper bounds of the median decision latency, to a power of 2. */
+    Map<String, Long> getP50Nanos();
+
+    /** Upper bounds of the 99th percentile decision latency, to a power of 2. */
+    Map<String, Long> getP99Nanos();
+
+    void reset();
+}
@@ -0,0 +1,146 @@
+package chernorizets.bg.syllabifier;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Keeps a {@link Syllabifier} on the rules in a directory (see
+ * {@link RuleSet#load}), reloading them whenever its rule files change.
+ * <p>
+ * The directory is watched on a background thread. Once a burst of changes
+ * has settled, the new rule set is built and checked there, and swapped in
+ * with a single write - threads syllabifying words meanwhile never wait for
+ * it, and finish the words they're on by the old rules. If the new rules
+ * have errors, the old ones stay in place, and the error is logged and
+ * counted; fixing the file reloads it again.
+ */
+public final class RuleReloader implements Closeable {
+
+    // Editors save in bursts - truncate, write, rename. Wait for quiet.
+    private static final long SETTLE_MILLIS = 100;
+
+    private final Syllabifier syllabifier;
+    private final Path dir;
+
+    private final WatchService watcher;
+    private final Thread thread;
+
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile String lastError;
+
+    /**
+     * Loads the rules in a directory into a syllabifier, and starts watching
+     * the directory for changes.
+     *
+     * @throws IllegalArgumentException if the rules have errors
+     */
+    public RuleReloader(Syllabifier syllabifier, Path dir) throws IOException {
+        this.syllabifier = syllabifier;
+        this.dir = dir;
+
+        // Unlike later reloads, the first one has no rules to fall back on.
+        syllabifier.setRules(RuleSet.load(dir));
+
+        this.watcher = dir.getFileSystem().newWatchService();
+        dir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+
+        this.thread = new Thread(this::watch, "rule-reloader-" + dir.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Reloads the rules right away.
+     *
+     * @return whether the new rules are in place - if not, the old ones are
+     */
+    public synchronized boolean reload() {
+        RuleSet rules;
+        try {
+            rules = RuleSet.load(dir);
+        } catch (IOException | IllegalArgumentException e) {
+            failures.increment();
+            lastError = e.getMessage();
+
+            System.err.printf("Keeping rules version %d, could not reload %s: %s%n",
+                    syllabifier.rules().version(), dir, e.getMessage());
+            return false;
+        }
+
+        syllabifier.setRules(rules);
+        reloads.increment();
+        lastError = null;
+
+        System.err.printf("Reloaded rules from %s, version %d%n", dir, rules.version());
+        return true;
+    }
+
+    /** The version of the rules in place. */
+    public long version() {
+        return syllabifier.rules().version();
+    }
+
+    /** The number of successful reloads, not counting the first load. */
+    public long reloads() {
+        return reloads.sum();
+    }
+
+    /** The number of reloads that failed, and left the old rules in place. */
+    public long failures() {
+        return failures.sum();
+    }
+
+    /** Why the last reload failed, or null if it succeeded. */
+    public String lastError() {
+        return lastError;
+    }
+
+    /** Stops watching the directory. The rules in place stay there. */
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+        thread.interrupt();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                boolean changed = drain(watcher.take());
+
+                // Keep collecting changes until there are none for a while.
+                for (WatchKey key; (key = watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null; ) {
+                    changed |= drain(key);
+                }
+
+                if (changed) reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    // Whether any rule files changed
+    private static boolean drain(WatchKey key) {
+        boolean changed = false;
+
+        for (var event : key.pollEvents()) {
+            // An overflow means events were lost - reload to be safe.
+            changed |= !(event.context() instanceof Path)
+                    || RuleSet.FILES.contains(((Path) event.context()).getFileName().toString());
+        }
+        key.reset();
+
+        return changed;
+    }
+}
@@ -0,0 +1,223 @@
+package chernorizets.bg.syllabifier;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An immutable, precompiled set of syllabification rules: the cluster rules,
+ * the morphological prefixes and suffixes, and the sonority ranks of the
+ * consonants - along with the cluster decisions memoized under them.
+ * <p>
+ * The bundled rules are the data files next to this class - clusters.txt,
+ * prefixes.txt and suffixes.txt - and the sonority hierarchy built into
+ * {@link SonorityModel}. A rules directory holds any of the same files,
+ * plus optionally sonority.txt, which overrides the ranks of some consonants,
+ * from 1 (fricatives) to 4 (sonorants):
+ * <pre>
+ *   # rank, then the consonants that have it
+ *   3 в
+ * </pre>
+ * 'щ' ranks as 'ш' followed by 'т', and 'дж' like 'ч'.
+ * Files missing from the directory are taken from the bundled rules.
+ * <p>
+ * A {@link Syllabifier} reads its rule set through a single volatile
+ * reference, once per word - so a new rule set can be swapped in while
+ * words are being syllabified, and every word is syllabified under one rule
+ * set or the other, never a mix. {@link RuleReloader} does that whenever a
+ * rules directory changes. Every rule set gets a version number when it's
+ * built, higher than that of any built before it.
+ */
+public final class RuleSet {
+
+    static final String CLUSTERS_FILE = "clusters.txt";
+    static final String PREFIXES_FILE = "prefixes.txt";
+    static final String SUFFIXES_FILE = "suffixes.txt";
+    static final String SONORITY_FILE = "sonority.txt";
+
+    static final List<String> FILES = List.of(CLUSTERS_FILE, PREFIXES_FILE, SUFFIXES_FILE, SONORITY_FILE);
+
+    // Ranks must stay below those of vowels.
+    private static final int MAX_CONSONANT_RANK = 4;
+
+    // Words that every rule set has to syllabify without failing, covering
+    // every rule: prefixes, suffixes, kept and broken clusters, 'щ', 'дж'.
+    private static final List<String> CANARIES = List.of(
+            "магданоз", "безизразен", "изключвам", "възможен", "вселена", "гнездо", "пъстърва",
+            "щастие", "нощница", "чекмедже", "подстрекател", "над.живея", "административен");
+
+    private static final char BLOCK_START = 'Ѐ';
+    private static final int BLOCK_SIZE = 0x100;
+
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    private static final RuleSet BUNDLED = new RuleSet("bundled",
+            ClusterRules.load(CLUSTERS_FILE),
+            MorphemeTrie.forward(PrefixSeparator.PREFIXES),
+            MorphemeTrie.reverse(SuffixSeparator.SUFFIXES),
+            bundledRanks());
+
+    private final long version;
+    private final String source;
+
+    final ClusterRules clusterRules;
+    final MorphemeTrie prefixes;
+    final MorphemeTrie suffixes;
+
+    // Sonority ranks of the characters in the Cyrillic block
+    private final byte[] sonorityRanks;
+
+    // How each consonant cluster breaks under these rules, worked out once
+    // per cluster.
+    final ClusterDecisions clusterDecisions;
+
+    private RuleSet(String source, ClusterRules clusterRules, MorphemeTrie prefixes, MorphemeTrie suffixes,
+                    byte[] sonorityRanks) {
+        this.version = VERSIONS.incrementAndGet();
+        this.source = source;
+        this.clusterRules = clusterRules;
+        this.prefixes = prefixes;
+        this.suffixes = suffixes;
+        this.sonorityRanks = sonorityRanks;
+        this.clusterDecisions = new ClusterDecisions(this);
+    }
+
+    /** The rules bundled with the library. */
+    public static RuleSet bundled() {
+        return BUNDLED;
+    }
+
+    /**
+     * Builds a rule set from the files in a directory, and checks that it
+     * syllabifies a few words covering every rule without failing.
+     *
+     * @throws IllegalArgumentException if a file has errors, or the rules don't work
+     */
+    public static RuleSet load(Path dir) throws IOException {
+        var clusters = Files.exists(dir.resolve(CLUSTERS_FILE))
+                ? ClusterRules.parse(reader(dir, CLUSTERS_FILE), dir.resolve(CLUSTERS_FILE).toString())
+                : BUNDLED.clusterRules;
+
+        var prefixes = Files.exists(dir.resolve(PREFIXES_FILE))
+                ? MorphemeTrie.forward(MorphemeTrie.parse(reader(dir, PREFIXES_FILE),
+                        dir.resolve(PREFIXES_FILE).toString()))
+                : BUNDLED.prefixes;
+
+        var suffixes = Files.exists(dir.resolve(SUFFIXES_FILE))
+                ? MorphemeTrie.reverse(MorphemeTrie.parse(reader(dir, SUFFIXES_FILE),
+                        dir.resolve(SUFFIXES_FILE).toString()))
+                : BUNDLED.suffixes;
+
+        var ranks = Files.exists(dir.resolve(SONORITY_FILE))
+                ? parseRanks(reader(dir, SONORITY_FILE), dir.resolve(SONORITY_FILE).toString())
+                : BUNDLED.sonorityRanks;
+
+        var rules = new RuleSet(dir.toString(), clusters, prefixes, suffixes, ranks);
+        rules.validate();
+
+        return rules;
+    }
+
+    private static BufferedReader reader(Path dir, String file) throws IOException {
+        // Small files - read whole, so they're closed right away.
+        return new BufferedReader(new StringReader(Files.readString(dir.resolve(file), StandardCharsets.UTF_8)));
+    }
+
+    private void validate() {
+        var syllabifier = new Syllabifier(this);
+
+        for (var word : CANARIES) {
+            try {
+                syllabifier.syllabify(word);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Rules from " + source + " fail on \"" + word + "\": " + e, e);
+            }
+        }
+    }
+
+    /** Higher for rule sets built later. */
+    public long version() {
+        return version;
+    }
+
+    /** Where the rules were loaded from. */
+    public String source() {
+        return source;
+    }
+
+    /**
+     * The sonority rank of a letter under these rules: fricatives, then
+     * stops and affricates, then 'в', then sonorants, then vowels, by
+     * default. 0 for anything that's not a Bulgarian letter.
+     */
+    public int sonorityRank(char ch) {
+        int idx = ch - BLOCK_START;
+
+        return (idx >>> 8) == 0 ? sonorityRanks[idx] : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "RuleSet[version=" + version + ", source=" + source + "]";
+    }
+
+    private static byte[] bundledRanks() {
+        var ranks = new byte[BLOCK_SIZE];
+        for (int i = 0; i < BLOCK_SIZE; i++) ranks[i] = (byte) LetterClassifier.sonorityRank((char) (BLOCK_START + i));
+
+        return ranks;
+    }
+
+    static byte[] parseRanks(BufferedReader reader, String sourceName) throws IOException {
+        var ranks = bundledRanks();
+        var seen = new StringBuilder();
+
+        int lineNo = 0;
+        for (String line; (line = reader.readLine()) != null; ) {
+            ++lineNo;
+
+            int comment = line.indexOf('#');
+            var content = (comment == -1 ? line : line.substring(0, comment)).strip();
+            if (content.isEmpty()) continue;
+
+            var fields = content.split("\\s+");
+
+            int rank;
+            try {
+                rank = Integer.parseInt(fields[0]);
+            } catch (NumberFormatException e) {
+                throw error(sourceName, lineNo, "expected '<rank> <consonant>...'");
+            }
+
+            if (rank < 1 || rank > MAX_CONSONANT_RANK) {
+                throw error(sourceName, lineNo, "rank must be between 1 and " + MAX_CONSONANT_RANK);
+            }
+            if (fields.length < 2) throw error(sourceName, lineNo, "expected '<rank> <consonant>...'");
+
+            for (int f = 1; f < fields.length; f++) {
+                var letter = fields[f];
+                char ch = letter.charAt(0);
+
+                if (letter.length() != 1 || ch != LetterClassifier.toLowerCase(ch) || !LetterClassifier.isConsonant(ch)) {
+                    throw error(sourceName, lineNo, "not a lowercase Bulgarian consonant: '" + letter + "'");
+                }
+                if (seen.indexOf(letter) != -1) throw error(sourceName, lineNo, "duplicate rank for " + letter);
+                seen.append(ch);
+
+                ranks[ch - BLOCK_START] = (byte) rank;
+                ranks[Character.toUpperCase(ch) - BLOCK_START] = (byte) rank;
+            }
+        }
+
+        return ranks;
+    }
+
+    private static IllegalArgumentException error(String sourceName, int lineNo, String message) {
+        return new IllegalArgumentException(String.format("%s:%d: %s", sourceName, lineNo, message));
+    }
+}
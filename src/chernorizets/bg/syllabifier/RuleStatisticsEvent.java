@@ -0,0 +1,37 @@
+package chernorizets.bg.syllabifier;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/*
+ * Running totals of a rule's decisions, see RuleMetrics. Emitted for every
+ * rule once a second during a recording.
+ */
+@Name("bg.syllabifier.RuleStatistics")
+@Label("Syllable Break Rule Statistics")
+@Category("Bulgarian Syllabifier")
+@Description("Decisions made by a syllable break rule since startup, and their latency")
+@Period("1 s")
+@StackTrace(false)
+final class RuleStatisticsEvent extends jdk.jfr.Event {
+
+    @Label("Rule")
+    String rule;
+
+    @Label("Decisions")
+    long decisions;
+
+    @Label("Total Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long totalNanos;
+
+    @Label("99th Percentile Time")
+    @Description("Upper bound, to a power of 2")
+    @Timespan(Timespan.NANOSECONDS)
+    long p99Nanos;
+}
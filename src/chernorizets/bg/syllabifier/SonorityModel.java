@@ -35,27 +35,67 @@ public class SonorityModel {
         return sonorities;
     }
 
-    public static int getSonorityRank(char ch) {
-        if (LetterClassifier.isFricative(ch) && ch != 'в') {
-            return 1;
-        }
+    /**
+     * Finds the first index in [startIdx, endIdx) where the consonant cluster
+     * breaks from the rule of rising sonority. If there's no such index, the
+     * cluster start is returned.
+     * <p>
+     * Equivalent to scanning the output of {@link #getSonorityModel}, but
+     * folds case on the fly, skips combining marks and does not allocate.
+     */
+    public static int findRisingSonorityBreak(CharSequence word, int startIdx, int endIdx) {
+        return findRisingSonorityBreak(word, startIdx, endIdx, RuleSet.bundled());
+    }
 
-        if (LetterClassifier.isStop(ch) || LetterClassifier.isAffricate(ch)) {
-            return 2;
-        }
+    /**
+     * Same as {@link #findRisingSonorityBreak(CharSequence, int, int)}, with
+     * the sonority ranks of a rule set. 'дж' ranks like 'ч'.
+     */
+    static int findRisingSonorityBreak(CharSequence word, int startIdx, int endIdx, RuleSet rules) {
+        int prevRank = -1;
+        int firstIdx = -1;
 
-        if (ch == 'в') {
-            return 3;
-        }
+        for (int i = startIdx; i < endIdx; i++) {
+            char curr = LetterClassifier.toLowerCase(word.charAt(i));
+            int rank;
 
-        if (LetterClassifier.isSonorant(ch)) {
-            return 4;
-        }
+            // Stray diacritics don't change the sonority either.
+            if (LetterClassifier.isCombiningMark(curr)) continue;
+
+            if (!LetterClassifier.isPalatalizer(curr) && firstIdx == -1) firstIdx = i;
+
+            if (curr == 'щ') {
+                // 'ш' followed by 'т' - the 'т' can never be a break on its own.
+                if (rules.sonorityRank('ш') <= prevRank) return i;
+                rank = rules.sonorityRank('т');
+            } else if (curr == 'д') {
+                char next = (i == endIdx - 1) ? ' ' : LetterClassifier.toLowerCase(word.charAt(i + 1));
 
-        if (LetterClassifier.isVowel(ch)) {
-            return 5;
+                if (next == 'ж') {
+                    int affricateRank = rules.sonorityRank('ч');
+                    if (affricateRank <= prevRank) return i;
+                    prevRank = affricateRank;
+                    ++i; // Skip over the 'ж'
+                    continue;
+                }
+
+                rank = rules.sonorityRank('д');
+            } else if (LetterClassifier.isPalatalizer(curr)) {
+                continue;
+            } else {
+                rank = rules.sonorityRank(curr);
+            }
+
+            if (rank <= prevRank) return i;
+
+            prevRank = rank;
         }
 
-        return 0;
+        // There was no rising sonority break. Start syllable at first index.
+        return firstIdx == -1 ? startIdx : firstIdx;
+    }
+
+    public static int getSonorityRank(char ch) {
+        return LetterClassifier.sonorityRank(ch);
     }
 }
@@ -0,0 +1,62 @@
+package chernorizets.bg.syllabifier;
+
+import java.util.List;
+
+/**
+ * This class brings morphological suffix awareness to syllabification.
+ * <p>
+ * It mirrors {@link PrefixSeparator}: following the principle of rising
+ * sonority alone would glue the last consonant of a stem to a suffix that
+ * starts with a consonant of a higher sonority - e.g. из-во-звам instead
+ * of из-воз-вам.
+ */
+class SuffixSeparator {
+
+    /**
+     * Affected suffixes. Each of them starts with a consonant that can be
+     * preceded by a consonant of a lower sonority in some words.
+     * <p>
+     * The list is maintained in the {@code suffixes.txt} data file.
+     */
+    static final List<String> SUFFIXES = MorphemeTrie.load("suffixes.txt");
+
+    /**
+     * Finds the separation points between the stem of the word occupying
+     * [start, end) of a character sequence and its morphological suffixes.
+     * As with prefixes, a separation point is the index of the first
+     * character of a suffix. Letters are compared case-insensitively.
+     *
+     * @return a bit mask where bit <i>k</i> is set if there is a separation
+     * point at index <i>end - k</i>
+     */
+    static long findSeparationMask(CharSequence word, int start, int end) {
+        return findSeparationMask(RuleSet.bundled(), word, start, end);
+    }
+
+    /**
+     * Same as {@link #findSeparationMask(CharSequence, int, int)}, with the
+     * suffixes and sonority ranks of a rule set.
+     */
+    static long findSeparationMask(RuleSet rules, CharSequence word, int start, int end) {
+        // A suffix must be preceded by at least one more letter
+        long suffixLengths = rules.suffixes.matchLengths(word, start, end, end - start - 1);
+        long mask = 0;
+
+        for (long m = suffixLengths; m != 0; m &= m - 1) {
+            int len = Long.numberOfTrailingZeros(m);
+            if (precededByLowerSonorityCons(rules, word, end - len)) mask |= 1L << len;
+        }
+
+        return mask;
+    }
+
+    private static boolean precededByLowerSonorityCons(RuleSet rules, CharSequence word, int separationPoint) {
+        char lastCharBeforeSuffix = LetterClassifier.toLowerCase(word.charAt(separationPoint - 1));
+        char suffixFirstChar = LetterClassifier.toLowerCase(word.charAt(separationPoint));
+
+        // Suffixes preceded by vowels get a syllable onset of their own anyway.
+        if (!LetterClassifier.isConsonant(lastCharBeforeSuffix)) return false;
+
+        return rules.sonorityRank(lastCharBeforeSuffix) < rules.sonorityRank(suffixFirstChar);
+    }
+}
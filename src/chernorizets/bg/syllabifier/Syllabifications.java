@@ -0,0 +1,262 @@
+package chernorizets.bg.syllabifier;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The acceptable syllabifications of a word, from
+ * {@link Syllabifier#syllabifications}.
+ * <p>
+ * Per the textbook, some syllable breaks are ambiguous:
+ * <ul>
+ *     <li>a consonant cluster broken by rising sonority can also be broken
+ *     further right, wherever a fricative is followed by an obstruent (те-сто,
+ *     тес-то), or an obstruent by a sonorant (ле-сно, лес-но)</li>
+ *     <li>a cluster that clusters.txt breaks up in spite of rising sonority
+ *     can also be broken where sonority analysis would, or further right
+ *     like above (гнез-до, гне-здо)</li>
+ * </ul>
+ * Every other break - at a forced break, a prefix or a suffix, a single
+ * consonant, between adjacent vowels, or around a cluster that's kept - has
+ * only the one place. That includes a break the sonority rules put where a
+ * prefix ends or a suffix starts anyway (въз-ста-но-вя); and no alternative
+ * goes past a prefix end or a suffix start into the morpheme.
+ * <p>
+ * Each ambiguous break has its options in order of preference: the one
+ * {@link Syllabifier} picks, then the others from left to right. The
+ * syllabifications are iterated like an odometer - the first one has every
+ * break where {@link Syllabifier#syllabify} puts it, and the rightmost
+ * ambiguous break changes fastest. Moving to the next one only rebuilds the
+ * syllables after the leftmost break that changed.
+ * <p>
+ * Instances are immutable. Their iterators are not thread-safe.
+ */
+public final class Syllabifications implements Iterable<List<String>> {
+
+    private final RuleSet rules;
+    private final String norm;
+
+    // The preferred break offsets, or null if the word has no letters
+    private final int[] breakOffsets;
+
+    // Where a prefix ends or a suffix starts, whatever the letters around
+    private final int[] morphemeBoundaries;
+
+    // The breaks with more than one option, by index, and their options
+    private final int[] ambiguousBreaks;
+    private final int[][] options;
+
+    /*
+     * The word's letters occupy [start, end) of norm. Decisions is null if
+     * it has none.
+     */
+    Syllabifications(RuleSet rules, String norm, int start, int end, List<BreakDecision> decisions) {
+        this.rules = rules;
+        this.norm = norm;
+
+        if (decisions == null) {
+            this.breakOffsets = null;
+            this.morphemeBoundaries = new int[0];
+            this.ambiguousBreaks = new int[0];
+            this.options = new int[0][];
+            return;
+        }
+
+        this.morphemeBoundaries = morphemeBoundaries(rules, norm, start, end);
+
+        this.breakOffsets = new int[decisions.size()];
+        var ambiguous = new int[decisions.size()];
+        var ambiguousOptions = new int[decisions.size()][];
+        int nAmbiguous = 0;
+
+        for (int i = 0; i < breakOffsets.length; i++) {
+            var decision = decisions.get(i);
+            breakOffsets[i] = decision.onset();
+
+            int[] breakOptions = optionsFor(decision);
+            if (breakOptions.length > 1) {
+                ambiguous[nAmbiguous] = i;
+                ambiguousOptions[nAmbiguous++] = breakOptions;
+            }
+        }
+
+        this.ambiguousBreaks = Arrays.copyOf(ambiguous, nAmbiguous);
+        this.options = Arrays.copyOf(ambiguousOptions, nAmbiguous);
+    }
+
+    /**
+     * The number of syllabifications, without building any of them - the
+     * product of the number of options at every break. 0 if the word has
+     * no letters, and {@link Long#MAX_VALUE} if there are more than that.
+     */
+    public long count() {
+        if (breakOffsets == null) return 0;
+
+        long count = 1;
+        for (int[] breakOptions : options) {
+            if (count > Long.MAX_VALUE / breakOptions.length) return Long.MAX_VALUE;
+            count *= breakOptions.length;
+        }
+
+        return count;
+    }
+
+    /** Whether there's more than one way to syllabify the word. */
+    public boolean isAmbiguous() {
+        return options.length > 0;
+    }
+
+    /**
+     * Iterates over the syllabifications in order of preference. The lists
+     * are unmodifiable.
+     */
+    @Override
+    public Iterator<List<String>> iterator() {
+        return new Odometer();
+    }
+
+    /*
+     * Every prefix and suffix match, as PrefixSeparator and SuffixSeparator
+     * find them but without their sonority check - the breaks it leaves to
+     * the sonority rules are at the morpheme boundary all the same.
+     */
+    private static int[] morphemeBoundaries(RuleSet rules, String norm, int start, int end) {
+        long prefixLengths = rules.prefixes.stackedMatchLengths(norm, start, end, end - start - 1);
+        long suffixLengths = rules.suffixes.matchLengths(norm, start, end, end - start - 1);
+
+        var boundaries = new int[Long.bitCount(prefixLengths) + Long.bitCount(suffixLengths)];
+        int n = 0;
+        for (long m = prefixLengths; m != 0; m &= m - 1) boundaries[n++] = start + Long.numberOfTrailingZeros(m);
+        for (long m = suffixLengths; m != 0; m &= m - 1) boundaries[n++] = end - Long.numberOfTrailingZeros(m);
+
+        return boundaries;
+    }
+
+    private int[] optionsFor(BreakDecision decision) {
+        int onset = decision.onset();
+
+        // The last option allowed: not past a morpheme boundary inside the
+        // cluster. Boundaries after a vowel - не-, по- - are at its start.
+        int last = decision.rightVowel() - 1;
+        for (int boundary : morphemeBoundaries) {
+            if (boundary <= decision.leftVowel() || boundary >= decision.rightVowel()
+                    || !LetterClassifier.isConsonant(norm.charAt(boundary - 1))) {
+                continue;
+            }
+
+            if (boundary == onset) return new int[] {onset};
+            last = Math.min(last, boundary);
+        }
+
+        switch (decision.rule()) {
+            case RISING_SONORITY:
+                return options(onset, onset, last);
+
+            case BREAK_CLUSTER:
+                int sonorityBreak = SonorityModel.findRisingSonorityBreak(norm, decision.leftVowel() + 1,
+                        decision.rightVowel(), rules);
+                return options(onset, sonorityBreak, last);
+
+            default:
+                return new int[] {onset};
+        }
+    }
+
+    /*
+     * The preferred break, then the sonority break if that's different,
+     * then the ambiguous points after it, up to the last one allowed.
+     */
+    private int[] options(int preferred, int sonorityBreak, int last) {
+        var breakOptions = new int[Math.max(0, last - sonorityBreak) + 2];
+        int nOptions = 0;
+
+        breakOptions[nOptions++] = preferred;
+        if (sonorityBreak != preferred && sonorityBreak <= last) breakOptions[nOptions++] = sonorityBreak;
+
+        for (int i = sonorityBreak + 1; i <= last; i++) {
+            if (i != preferred && isAmbiguousBoundary(sonorityBreak, i)) breakOptions[nOptions++] = i;
+        }
+
+        return Arrays.copyOf(breakOptions, nOptions);
+    }
+
+    /*
+     * Whether a syllable could start at i, right after the consonant before
+     * it - looking no further back than from.
+     */
+    private boolean isAmbiguousBoundary(int from, int i) {
+        char next = norm.charAt(i);
+        if (!LetterClassifier.isConsonant(next)) return false;
+
+        // 'ь' and accents belong to the consonant before them.
+        int p = i - 1;
+        while (p >= from && (LetterClassifier.isPalatalizer(norm.charAt(p))
+                || LetterClassifier.isCombiningMark(norm.charAt(p)))) {
+            p--;
+        }
+        if (p < from) return false;
+
+        char prev = norm.charAt(p);
+
+        return (LetterClassifier.isFricative(prev) && isObstruent(next))
+                || (isObstruent(prev) && LetterClassifier.isSonorant(next));
+    }
+
+    // 'щ' is 'шт' - an obstruent either way.
+    private static boolean isObstruent(char ch) {
+        return ch == 'щ' || LetterClassifier.isObstruent(ch);
+    }
+
+    private final class Odometer implements Iterator<List<String>> {
+        final int[] choices = new int[options.length];
+        final int[] offsets = breakOffsets != null ? breakOffsets.clone() : null;
+        final String[] syllables = breakOffsets != null ? new String[breakOffsets.length + 1] : null;
+
+        // The first syllable that has to be rebuilt for the next
+        // syllabification, or -1 if there are no more.
+        int changedFrom = breakOffsets != null ? 0 : -1;
+
+        @Override
+        public boolean hasNext() {
+            return changedFrom != -1;
+        }
+
+        @Override
+        public List<String> next() {
+            if (changedFrom == -1) throw new NoSuchElementException();
+
+            for (int s = changedFrom; s < syllables.length; s++) {
+                int from = s == 0 ? 0 : offsets[s - 1];
+                int to = s == offsets.length ? norm.length() : offsets[s];
+
+                syllables[s] = Syllabifier.normalizeSyllable(norm, from, to);
+            }
+
+            var syllabification = List.of(syllables);
+            advance();
+
+            return syllabification;
+        }
+
+        private void advance() {
+            int j = choices.length - 1;
+            while (j >= 0 && choices[j] == options[j].length - 1) {
+                choices[j] = 0;
+                offsets[ambiguousBreaks[j]] = options[j][0];
+                j--;
+            }
+
+            if (j < 0) {
+                changedFrom = -1;
+                return;
+            }
+
+            offsets[ambiguousBreaks[j]] = options[j][++choices[j]];
+
+            // Break b is between syllables b and b + 1.
+            changedFrom = ambiguousBreaks[j];
+        }
+    }
+}
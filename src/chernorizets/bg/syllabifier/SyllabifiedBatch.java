@@ -0,0 +1,167 @@
+package chernorizets.bg.syllabifier;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The syllabifications of a batch of words, in input order.
+ * <p>
+ * Breaks are kept in one preallocated {@code long} per word: bit <i>k</i>
+ * is set if a syllable starts at index <i>k</i> of the trimmed word. Bit 0
+ * is set for every non-empty word, so the number of syllables is the
+ * number of set bits. The few words longer than 64 characters have a mask
+ * of 0, and keep their break offsets in separate overflow arrays instead,
+ * sorted by word index.
+ * <p>
+ * Instances are effectively immutable once returned by
+ * {@link BatchSyllabifier}, and can be shared between threads.
+ */
+public final class SyllabifiedBatch {
+
+    static final int MAX_MASK_LENGTH = Long.SIZE;
+
+    private final String[] words;
+
+    final long[] masks;
+
+    // The mask of words left for collectOverflow during the parallel phase -
+    // never a real one, since those all have bit 0 set.
+    private static final long PENDING_OVERFLOW = Long.MIN_VALUE;
+
+    // The indices of the words longer than MAX_MASK_LENGTH, in increasing
+    // order. Word overflowIds[o] has the break offsets (relative to the
+    // trimmed word) overflowBreaks[overflowStarts[o], overflowStarts[o + 1]).
+    private int[] overflowIds = new int[0];
+    private int[] overflowStarts = {0};
+    private int[] overflowBreaks = new int[0];
+
+    SyllabifiedBatch(String[] words) {
+        this.words = words;
+        this.masks = new long[words.length];
+    }
+
+    public int size() {
+        return words.length;
+    }
+
+    public String word(int idx) {
+        return words[idx];
+    }
+
+    public int syllableCount(int idx) {
+        if (masks[idx] != 0) return Long.bitCount(masks[idx]);
+
+        int o = Arrays.binarySearch(overflowIds, idx);
+        return o < 0 ? 0 : overflowStarts[o + 1] - overflowStarts[o] + 1;
+    }
+
+    /**
+     * Writes the break offsets of a word, relative to the trimmed word, into
+     * a buffer - the same way {@link Syllabifier#syllabifyInto} does.
+     *
+     * @return the number of syllables
+     */
+    public int breaks(int idx, int[] breakOffsets) {
+        if (masks[idx] == 0) {
+            int o = Arrays.binarySearch(overflowIds, idx);
+            if (o < 0) return 0;
+
+            int nBreaks = overflowStarts[o + 1] - overflowStarts[o];
+            System.arraycopy(overflowBreaks, overflowStarts[o], breakOffsets, 0, nBreaks);
+            return nBreaks + 1;
+        }
+
+        int nBreaks = 0;
+        for (long m = masks[idx] & ~1L; m != 0; m &= m - 1) {
+            breakOffsets[nBreaks++] = Long.numberOfTrailingZeros(m);
+        }
+
+        return nBreaks + 1;
+    }
+
+    /**
+     * The syllables of a word, the same as {@link Syllabifier#syllabify} would
+     * return them.
+     */
+    public List<String> syllables(int idx) {
+        var norm = Syllabifier.normalizeWord(words[idx]);
+        if (norm.isEmpty()) return List.of();
+
+        var breakOffsets = new int[norm.length()];
+        int nSyllables = breaks(idx, breakOffsets);
+        if (nSyllables == 0) return List.of();
+
+        return Syllabifier.toSyllables(norm, nSyllables, breakOffsets);
+    }
+
+    /*
+     * Records the result of Syllabifier.syllabifyInto for a word of at most
+     * MAX_MASK_LENGTH characters, trimmed. Each word is recorded by exactly
+     * one thread.
+     */
+    void record(int idx, int start, int end, int nSyllables, int[] breakOffsets) {
+        if (nSyllables == 0) return;
+
+        long mask = 1L;
+        for (int i = 0; i < nSyllables - 1; i++) mask |= 1L << (breakOffsets[i] - start);
+
+        masks[idx] = mask;
+    }
+
+    /*
+     * Leaves a word longer than MAX_MASK_LENGTH, trimmed, for collectOverflow.
+     * Each word is marked by exactly one thread.
+     */
+    void markOverflow(int idx) {
+        masks[idx] = PENDING_OVERFLOW;
+    }
+
+    /*
+     * Syllabifies the words marked for overflow, once the parallel phase is
+     * over. They're rare enough that doing it on one thread costs nothing,
+     * and it keeps the parallel phase free of shared growable state.
+     */
+    void collectOverflow(Syllabifier syllabifier) {
+        int nOverflow = 0;
+        for (long mask : masks) {
+            if (mask == PENDING_OVERFLOW) nOverflow++;
+        }
+        if (nOverflow == 0) return;
+
+        var ids = new int[nOverflow];
+        var starts = new int[nOverflow + 1];
+        var breaks = new int[nOverflow * MAX_MASK_LENGTH / 2];
+        var breakOffsets = new int[MAX_MASK_LENGTH];
+
+        int o = 0;
+        for (int idx = 0; idx < masks.length; idx++) {
+            if (masks[idx] != PENDING_OVERFLOW) continue;
+            masks[idx] = 0;
+
+            var word = words[idx];
+            int start = 0, end = word.length();
+            while (start < end && word.charAt(start) <= ' ') start++;
+            while (end > start && word.charAt(end - 1) <= ' ') end--;
+
+            if (end - start > breakOffsets.length) breakOffsets = new int[end - start];
+            int nSyllables = syllabifier.syllabifyInto(word, start, end, breakOffsets);
+
+            // No letters - a mask of 0 and no overflow entry, like short words
+            if (nSyllables == 0) continue;
+
+            int nBreaks = nSyllables - 1;
+            if (starts[o] + nBreaks > breaks.length) {
+                breaks = Arrays.copyOf(breaks, Math.max(starts[o] + nBreaks, 2 * breaks.length));
+            }
+            for (int i = 0; i < nBreaks; i++) breaks[starts[o] + i] = breakOffsets[i] - start;
+
+            ids[o] = idx;
+            starts[o + 1] = starts[o] + nBreaks;
+            o++;
+        }
+
+        overflowIds = Arrays.copyOf(ids, o);
+        overflowStarts = Arrays.copyOf(starts, o + 1);
+        overflowBreaks = Arrays.copyOf(breaks, starts[o]);
+    }
+}
@@ -1,198 +1,540 @@
 package chernorizets.bg.syllabifier;
 
 import java.util.*;
-import java.util.stream.Collectors;
-
-import static java.util.Map.entry;
 
+/**
+ * Splits Bulgarian words into syllables.
+ * <p>
+ * Instances hold no mutable state but the {@link RuleSet} they syllabify
+ * by, which is immutable, and can be swapped for another one with
+ * {@link #setRules} at any time. Each word is syllabified under the rules
+ * read when it was started, so a swap never blocks or disturbs the words in
+ * progress. Instances are thread-safe: a single one can be shared by any
+ * number of threads, without synchronization.
+ */
 public class Syllabifier {
 
-    static class Context {
-        final String word;
+    private static final int[] NO_IDS = new int[0];
 
-        final List<Integer> prefixSeparationPoints;
+    private volatile RuleSet rules;
 
-        Context(String word, List<Integer> separationPoints) {
-            this.word = word;
-            this.prefixSeparationPoints = Collections.unmodifiableList(separationPoints);
-        }
+    /** A syllabifier by the bundled rules. */
+    public Syllabifier() {
+        this(RuleSet.bundled());
+    }
+
+    public Syllabifier(RuleSet rules) {
+        this.rules = Objects.requireNonNull(rules, "rules");
     }
 
-    // Consonant clusters that exhibit rising sonority, but should be
-    // broken up regardless to produce natural-sounding syllables.
-    // The breakpoint for clusters of 3 or more consonants can vary -
-    // here we provide a zero-based offset within the cluster for each.
-    static final Map<String, Integer> SONORITY_EXCEPTION_BREAK = Map.ofEntries(
-            entry("км", 1), entry("гм", 1), entry("кн", 1), entry("гн", 1),
-            entry("дн", 1), entry("дм", 1),
-            entry("зм", 1), entry("зд", 1), entry("зч", 1), entry("зц", 1),
-            entry("вк", 1), entry("вг", 1), entry("дл", 1), entry("жд", 1),
-            entry("ўнл", 2), entry("згн", 1), entry("здн", 2), entry("вдж", 1)
-    );
-
-    // Consonant clusters that don't follow the rising sonority principle,
-    // but should regardless be kept together.
-    static final List<String> SONORITY_EXCEPTION_KEEP = Arrays.asList(
-            "вс", "вз"
-    );
+    /** The rules words are syllabified by. */
+    public RuleSet rules() {
+        return rules;
+    }
+
+    /**
+     * Syllabifies words by other rules from now on. Words already being
+     * syllabified finish under the previous ones.
+     */
+    public void setRules(RuleSet rules) {
+        this.rules = Objects.requireNonNull(rules, "rules");
+    }
 
     public List<String> syllabify(String word) {
+        return syllabify(word, rules);
+    }
+
+    /*
+     * Syllabifies a word by the given rules, for callers that need to know
+     * which rules the syllables came from.
+     */
+    List<String> syllabify(String word, RuleSet rules) {
         var norm = normalizeWord(word);
 
         if (norm.isEmpty()) return List.of();
 
-        long nVowels = countVowels(norm);
-        var syllables = (nVowels <= 1) ? List.of(norm) : syllabifyPoly(norm);
+        var breakOffsets = new int[norm.length()];
+        int nSyllables = syllabifyInto(norm, 0, norm.length(), breakOffsets, rules);
+        if (nSyllables == 0) return List.of();
+
+        return toSyllables(norm, nSyllables, breakOffsets);
+    }
+
+    /**
+     * Same as {@link #syllabify}, with each syllable as its id in a table of
+     * syllables - adding the ones it doesn't have yet. The syllables are
+     * normalized the same way, so {@code table.syllables(ids)} is what
+     * {@link #syllabify} returns.
+     *
+     * @return the ids of the syllables, in order, or none if the word has no letters
+     */
+    public int[] syllabifyIds(String word, SyllableTable table) {
+        var norm = normalizeWord(word);
+
+        if (norm.isEmpty()) return NO_IDS;
+
+        var breakOffsets = new int[norm.length()];
+        int nSyllables = syllabifyInto(norm, 0, norm.length(), breakOffsets, rules);
+        if (nSyllables == 0) return NO_IDS;
+
+        var ids = new int[nSyllables];
+
+        int prevOnset = 0;
+        for (int i = 0; i < nSyllables; i++) {
+            int end = i < nSyllables - 1 ? breakOffsets[i] : norm.length();
+            ids[i] = internSyllable(table, norm, prevOnset, end);
+            prevOnset = end;
+        }
+
+        return ids;
+    }
+
+    /*
+     * Interns a syllable of a normalized word, normalized like
+     * normalizeSyllable - without copying it, unless it has to be rewritten.
+     */
+    private static int internSyllable(SyllableTable table, String norm, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char ch = norm.charAt(i);
+            if (ch == ForcedBreak.MARKER || ch == 'ў') return table.intern(normalizeSyllable(norm, from, to));
+        }
+
+        return table.intern(norm, from, to);
+    }
+
+    /*
+     * Cuts a normalized word at the given break offsets, and normalizes
+     * the resulting syllables.
+     */
+    static List<String> toSyllables(String norm, int nSyllables, int[] breakOffsets) {
+        var syllables = new ArrayList<String>(nSyllables);
+
+        int prevOnset = 0;
+        for (int i = 0; i < nSyllables - 1; i++) {
+            syllables.add(normalizeSyllable(norm, prevOnset, breakOffsets[i]));
+            prevOnset = breakOffsets[i];
+        }
+
+        // Add the last syllable
+        syllables.add(normalizeSyllable(norm, prevOnset, norm.length()));
 
-        return syllables.stream()
-                .map(this::normalizeSyllable)
-                .collect(Collectors.toList());
+        return syllables;
     }
 
-    private List<String> syllabifyPoly(String word) {
-        var syllables = new ArrayList<String>();
+    /**
+     * Syllabifies a word without copying or allocating.
+     * <p>
+     * Leading and trailing whitespace and punctuation - anything but letters
+     * and combining marks - is skipped, and letters are classified regardless
+     * of case. Combining marks, like the stress accents in dictionary entries,
+     * stay with the letter before them. Forced breaks (see
+     * {@link ForcedBreak#MARKER}) are honored, and stay part of the syllable
+     * they follow. The characters of the word are never rewritten, so cutting
+     * it at the break offsets keeps its case and accents - and normalizing 'ў'
+     * to 'у' is up to the caller.
+     * <p>
+     * The break offsets are indices into {@code word} of the first character
+     * of every syllable except the first one, in increasing order. A buffer
+     * with room for {@code word.length()} offsets is always sufficient.
+     *
+     * @param word the word to syllabify
+     * @param breakOffsets the buffer to write syllable break offsets into
+     *
+     * @return the number of syllables, or 0 if the word has no letters.
+     * Exactly one fewer break offsets are written to the buffer.
+     *
+     * @throws IllegalArgumentException if the buffer is too small
+     */
+    public int syllabifyInto(CharSequence word, int[] breakOffsets) {
+        if (word == null) return 0;
+
+        return syllabifyInto(word, 0, word.length(), breakOffsets);
+    }
+
+    /**
+     * Same as {@link #syllabifyInto(CharSequence, int[])}, for the word
+     * occupying [start, end) of a longer text. Break offsets are indices
+     * into {@code text}.
+     */
+    public int syllabifyInto(CharSequence text, int start, int end, int[] breakOffsets) {
+        return syllabifyInto(text, start, end, breakOffsets, rules);
+    }
+
+    /**
+     * Same as {@link #syllabifyInto(CharSequence, int, int, int[])}, for a
+     * word in a text buffer that's been classified whole - e.g. a page of a
+     * document. Rather than classifying every character of the word, this
+     * jumps from vowel to vowel in the masks, and only looks at the
+     * consonant clusters between them.
+     *
+     * @param masks the masks of {@code text}, from {@link LetterMasks#classify}
+     */
+    public int syllabifyInto(CharSequence text, int start, int end, LetterMasks masks, int[] breakOffsets) {
+        while (start < end && !masks.isWordChar(start)) start++;
+        while (end > start && !masks.isWordChar(end - 1)) end--;
+
+        if (start == end) return 0;
+
+        return syllabifyVowels(rules, text, start, end, masks, breakOffsets) + 1;
+    }
+
+    private int syllabifyInto(CharSequence text, int start, int end, int[] breakOffsets, RuleSet rules) {
+        start = wordStart(text, start, end);
+        end = wordEnd(text, start, end);
+
+        if (start == end) return 0;
+
+        return syllabifyPoly(rules, text, start, end, breakOffsets, null) + 1;
+    }
 
-        var ctx = new Context(word, PrefixSeparator.findSeparationPoints(word));
+    /**
+     * Traces how a word is syllabified: for every pair of consecutive vowels,
+     * where the break between them goes, and which rule decided that. Words
+     * with fewer than two vowels have no breaks to explain.
+     * <p>
+     * This is for debugging wrong breaks, and allocates freely.
+     */
+    public List<BreakDecision> explain(String word) {
+        var trace = new ArrayList<BreakDecision>();
+        trace(rules, normalizeWord(word), trace);
+
+        return trace;
+    }
+
+    /**
+     * All the acceptable ways to syllabify a word, where the textbook allows
+     * more than one - e.g. те-сто and тес-то, ле-сно and лес-но. The first
+     * one is what {@link #syllabify} returns. The word is analyzed once, and
+     * the alternatives are built lazily, as they're iterated.
+     *
+     * @see Syllabifications
+     */
+    public Syllabifications syllabifications(String word) {
+        var norm = normalizeWord(word);
+        var trace = new ArrayList<BreakDecision>();
+
+        int start = wordStart(norm, 0, norm.length());
+        int end = wordEnd(norm, start, norm.length());
+
+        var rules = this.rules;
+        boolean hasLetters = trace(rules, norm, trace);
+
+        return new Syllabifications(rules, norm, start, end, hasLetters ? trace : null);
+    }
+
+    /*
+     * Traces the breaks of a normalized word. Returns false if it has no
+     * letters.
+     */
+    private boolean trace(RuleSet rules, String norm, List<BreakDecision> trace) {
+        int start = wordStart(norm, 0, norm.length());
+        int end = wordEnd(norm, start, norm.length());
+
+        if (start == end) return false;
+
+        syllabifyPoly(rules, norm, start, end, new int[norm.length()], trace);
+        return true;
+    }
 
-        int prevVowel = -1; int prevOnset = 0;
-        for (int i = 0; i < word.length(); i++) {
-            if (LetterClassifier.isVowel(word.charAt(i))) {
-                // A vowel, yay!
-                if (prevVowel == -1) {
-                    prevVowel = i;
+    /*
+     * Words start and end with a letter, or the combining marks after one.
+     */
+    /*
+     * Where the word occupying [start, end) of a text starts, skipping the
+     * non-letters before it - e.g. quotes. The same as end if it has no
+     * letters.
+     */
+    static int wordStart(CharSequence text, int start, int end) {
+        while (start < end && !isWordChar(text.charAt(start))) start++;
+        return start;
+    }
+
+    /*
+     * Where the word occupying [start, end) of a text ends, skipping the
+     * non-letters after it - e.g. punctuation.
+     */
+    static int wordEnd(CharSequence text, int start, int end) {
+        while (end > start && !isWordChar(text.charAt(end - 1))) end--;
+        return end;
+    }
+
+    private static boolean isWordChar(char ch) {
+        return Character.isLetter(ch) || LetterClassifier.isCombiningMark(ch);
+    }
+
+    /*
+     * Decides all the breaks of a word in a single pass, classifying every
+     * character once. What's needed to break a consonant cluster - its first
+     * forced break, and its key in the cluster rules - is accumulated as the
+     * cluster is scanned, so the decision at the vowel closing it is a lookup
+     * in the rules' cluster decisions, and nothing is allocated.
+     */
+    private static int syllabifyPoly(RuleSet rules, CharSequence word, int start, int end, int[] breakOffsets,
+                                     List<BreakDecision> trace) {
+        // Prefixes and suffixes only matter for clusters of 2+ consonants,
+        // so are looked for when the first one is closed.
+        long prefixSeparationMask = 0, suffixSeparationMask = 0;
+        boolean haveSeparationMasks = false;
+
+        int nBreaks = 0;
+        int prevVowel = -1;
+
+        // The consonant cluster since prevVowel, which starts after the
+        // vowel's combining marks, if any
+        int clusterStart = -1;
+        int forcedBreak = -1;
+        long clusterKey = ClusterRules.EMPTY_KEY;
+
+        for (int i = start; i < end; i++) {
+            char ch = LetterClassifier.toLowerCase(word.charAt(i));
+
+            if (!LetterClassifier.isVowel(ch)) {
+                // Consonants before the first vowel don't affect any break.
+                if (prevVowel == -1) continue;
+
+                if (i == clusterStart && LetterClassifier.isCombiningMark(ch)) {
+                    clusterStart++;
                     continue;
                 }
 
+                // Marks anywhere else are stray, and keep the cluster from
+                // having a key - it's decided on its characters each time.
+                if (ch == ForcedBreak.MARKER && forcedBreak == -1) forcedBreak = i;
+                clusterKey = ClusterRules.extendKey(clusterKey, ch);
+
+                continue;
+            }
+
+            // A vowel, yay!
+            if (prevVowel != -1) {
                 // This is not the first vowel we've seen. In-between
                 // the previous vowel and this one, there is a syllable
                 // break, and the first character after the break starts
                 // a new syllable.
-                int nextOnset = findNextSyllableOnset(ctx, prevVowel, i);
-                syllables.add(word.substring(prevOnset, nextOnset));
+                long startNanos = RuleMetrics.ENABLED ? System.nanoTime() : 0;
+
+                if (!haveSeparationMasks && needsSeparationMasks(clusterStart, i, forcedBreak)) {
+                    prefixSeparationMask = PrefixSeparator.findSeparationMask(rules, word, start, end);
+                    suffixSeparationMask = SuffixSeparator.findSeparationMask(rules, word, start, end);
+                    haveSeparationMasks = true;
+                }
+
+                long decision = decide(rules, word, start, end, prefixSeparationMask, suffixSeparationMask,
+                        clusterStart, i, forcedBreak, clusterKey);
+
+                int onset = onsetOf(decision);
 
-                prevVowel = i;
-                prevOnset = nextOnset;
+                if (RuleMetrics.ENABLED) {
+                    RuleMetrics.get().record(ruleOf(decision), System.nanoTime() - startNanos,
+                            word, start, end, onset);
+                }
+
+                if (trace != null) {
+                    trace.add(new BreakDecision(word.toString(), prevVowel, i, onset, ruleOf(decision)));
+                }
+
+                if (nBreaks == breakOffsets.length) {
+                    throw new IllegalArgumentException(String.format(
+                            "Need room for %d break offsets, got %d",
+                            countVowels(word, start, end) - 1, breakOffsets.length));
+                }
+
+                breakOffsets[nBreaks++] = onset;
             }
-        }
 
-        // Add the last syllable
-        syllables.add(word.substring(prevOnset));
+            prevVowel = i;
+            clusterStart = i + 1;
+            forcedBreak = -1;
+            clusterKey = ClusterRules.EMPTY_KEY;
+        }
 
-        return syllables;
+        return nBreaks;
     }
 
-    private int findNextSyllableOnset(Context ctx, int leftVowel, int rightVowel) {
-        int nCons = rightVowel - leftVowel - 1;
+    /*
+     * Scans a word in a classified text like syllabifyPoly, but finds the
+     * vowels in the masks - only the consonant clusters between them are
+     * looked at, a character at a time.
+     */
+    private static int syllabifyVowels(RuleSet rules, CharSequence word, int start, int end, LetterMasks masks,
+                                       int[] breakOffsets) {
+        long prefixSeparationMask = 0, suffixSeparationMask = 0;
+        boolean haveSeparationMasks = false;
 
-        // No consonants - syllable starts on rightVowel
-        if (nCons == 0) return rightVowel;
+        int nBreaks = 0;
 
-        // Check for forced breaks
-        int breakPos = ForcedBreak.findForcedBreak(ctx.word, leftVowel + 1, rightVowel);
-        if (breakPos != -1) return breakPos + 1;
+        int prevVowel = masks.nextVowel(start, end);
+        if (prevVowel == -1) return 0;
 
-        // Single consonant between two vowels - starts a syllable
-        if (nCons == 1) return leftVowel + 1;
+        for (int vowel; (vowel = masks.nextVowel(prevVowel + 1, end)) != -1; prevVowel = vowel) {
+            long startNanos = RuleMetrics.ENABLED ? System.nanoTime() : 0;
 
-        // Two or more consonants between the vowels. Find the point (if any)
-        // where we break from rising sonority, and treat it as the tentative
-        // onset of a new syllable.
-        var sonorities = SonorityModel.getSonorityModel(ctx.word, leftVowel + 1, rightVowel);
-        int sonorityBreak = findRisingSonorityBreak(sonorities);
+            // The cluster starts after the previous vowel's combining marks.
+            int clusterStart = prevVowel + 1;
+            int forcedBreak = -1;
+            long clusterKey = ClusterRules.EMPTY_KEY;
 
-        // Apply exceptions to the rising sonority principle to avoid
-        // unnatural-sounding syllables.
-        return fixupSyllableOnset(ctx, leftVowel, sonorityBreak, rightVowel);
-    }
+            for (int i = clusterStart; i < vowel; i++) {
+                char ch = LetterClassifier.toLowerCase(word.charAt(i));
 
-    // Find the first index where we break from the rule of rising sonority
-    private int findRisingSonorityBreak(List<Sonority> sonorities) {
-        int prevRank = -1;
+                if (i == clusterStart && LetterClassifier.isCombiningMark(ch)) {
+                    clusterStart++;
+                    continue;
+                }
+
+                if (ch == ForcedBreak.MARKER && forcedBreak == -1) forcedBreak = i;
+                clusterKey = ClusterRules.extendKey(clusterKey, ch);
+            }
+
+            if (!haveSeparationMasks && needsSeparationMasks(clusterStart, vowel, forcedBreak)) {
+                prefixSeparationMask = PrefixSeparator.findSeparationMask(rules, word, start, end);
+                suffixSeparationMask = SuffixSeparator.findSeparationMask(rules, word, start, end);
+                haveSeparationMasks = true;
+            }
+
+            long decision = decide(rules, word, start, end, prefixSeparationMask, suffixSeparationMask,
+                    clusterStart, vowel, forcedBreak, clusterKey);
 
-        for (Sonority curr : sonorities) {
-            if (curr.rank() <= prevRank) {
-                // Found a break.
-                return curr.firstIndex();
+            int onset = onsetOf(decision);
+
+            if (RuleMetrics.ENABLED) {
+                RuleMetrics.get().record(ruleOf(decision), System.nanoTime() - startNanos,
+                        word, start, end, onset);
+            }
+
+            if (nBreaks == breakOffsets.length) {
+                throw new IllegalArgumentException(String.format(
+                        "Need room for %d break offsets, got %d",
+                        countVowels(word, start, end) - 1, breakOffsets.length));
             }
 
-            prevRank = curr.rank();
+            breakOffsets[nBreaks++] = onset;
         }
 
-        // There was no rising sonority break. Start syllable at first index.
-        return sonorities.get(0).firstIndex();
+        return nBreaks;
     }
 
-    private int fixupSyllableOnset(Context ctx, int leftVowel, int sonorityBreak, int rightVowel) {
-        var word = ctx.word;
+    /*
+     * Prefixes and suffixes only matter for clusters of 2+ consonants
+     * without a forced break.
+     */
+    private static boolean needsSeparationMasks(int clusterStart, int rightVowel, int forcedBreak) {
+        return forcedBreak == -1 && rightVowel - clusterStart > 1;
+    }
 
-        // 'щр' is a syllable onset when in front of a vowel.
-        // Although 'щ' + sonorant technically follows rising sonority, syllables
-        // like щнV, щлV etc. are unnatural and incorrect. In such cases, we treat
-        // the sonorant as the onset of the next syllable.
-        if (word.charAt(rightVowel - 2) == 'щ') {
-            char penult = word.charAt(rightVowel - 1);
+    /*
+     * Decides the break between two vowels, from the consonant cluster
+     * between them - its start, first forced break and key.
+     */
+    private static long decide(RuleSet rules, CharSequence word, int start, int end,
+                               long prefixSeparationMask, long suffixSeparationMask,
+                               int clusterStart, int rightVowel, int forcedBreak, long clusterKey) {
+        int nCons = rightVowel - clusterStart;
+
+        if (nCons == 0) {
+            // No consonants - syllable starts on this vowel
+            return decision(BreakRule.ADJACENT_VOWELS, rightVowel);
+        } else if (forcedBreak != -1) {
+            return decision(BreakRule.FORCED_BREAK, forcedBreak + 1);
+        } else if (nCons == 1) {
+            // Single consonant between two vowels - starts a syllable
+            return decision(BreakRule.SINGLE_CONSONANT, clusterStart);
+        }
 
-            if (penult == 'р') return (rightVowel - 2);
+        // Two or more consonants between the vowels.
+        return fixupSyllableOnset(rules, word, start, end, prefixSeparationMask, suffixSeparationMask,
+                clusterStart, rightVowel, clusterKey);
+    }
 
-            if (LetterClassifier.isSonorant(penult)) return (rightVowel - 1);
-        }
+    /*
+     * Break decisions pack the rule that made them and the onset of the
+     * next syllable into a long, so that deciding stays allocation-free.
+     */
+    private static long decision(BreakRule rule, int onset) {
+        return (long) rule.ordinal() << Integer.SIZE | (onset & 0xFFFF_FFFFL);
+    }
 
-        // Check for situations where we shouldn't break the cluster.
-        var matchFound = SONORITY_EXCEPTION_KEEP.stream().anyMatch(
-                cluster -> matches(word, cluster, leftVowel + 1, rightVowel)
-        );
+    private static int onsetOf(long decision) {
+        return (int) decision;
+    }
 
-        if (matchFound) return leftVowel + 1; // syllable onset == beginning of cluster
+    private static BreakRule ruleOf(long decision) {
+        return BreakRule.ofOrdinal((int) (decision >>> Integer.SIZE));
+    }
 
-        // Check for situations where we should break the cluster even if
-        // it obeys the principle of rising sonority.
-        var maybeCluster = SONORITY_EXCEPTION_BREAK.keySet().stream()
-                .filter(cluster -> matches(word, cluster, leftVowel + 1, rightVowel))
-                .findAny()
-                .orElse(null);
+    private static long fixupSyllableOnset(RuleSet rules, CharSequence word, int start, int end,
+                                           long prefixSeparationMask, long suffixSeparationMask,
+                                           int clusterStart, int rightVowel, long clusterKey) {
+        // Find the point (if any) where the cluster breaks from rising
+        // sonority, or where the exceptions to the principle that avoid
+        // unnatural-sounding syllables break it instead.
+        long clusterDecision = rules.clusterDecisions.decide(word, clusterStart, rightVowel, clusterKey);
+        var rule = ClusterDecisions.ruleOf(clusterDecision);
+        int onset = clusterStart + ClusterDecisions.offsetOf(clusterDecision);
+
+        if (rule != BreakRule.RISING_SONORITY) return decision(rule, onset);
+
+        // Check for prefix, then suffix separation points. If one is found,
+        // return that, otherwise return the sonority break.
+        for (long m = prefixSeparationMask; m != 0; m &= m - 1) {
+            int pos = start + Long.numberOfTrailingZeros(m);
+            if (pos >= clusterStart && pos < rightVowel) return decision(BreakRule.PREFIX, pos);
+        }
 
-        if (maybeCluster != null) {
-            int offset = SONORITY_EXCEPTION_BREAK.get(maybeCluster);
-            return leftVowel + 1 + offset;
+        for (long m = suffixSeparationMask; m != 0; m &= m - 1) {
+            int pos = end - Long.numberOfTrailingZeros(m);
+            if (pos >= clusterStart && pos < rightVowel) return decision(BreakRule.SUFFIX, pos);
         }
 
-        // Check for prefix separation points. If one is found, return
-        // that, otherwise return the sonority break.
-        List<Integer> separationPoints = ctx.prefixSeparationPoints;
-        return separationPoints.stream()
-                .filter(pos -> pos > leftVowel && pos < rightVowel)
-                .findAny()
-                .orElse(sonorityBreak);
+        return decision(BreakRule.RISING_SONORITY, onset);
     }
 
-    private String normalizeWord(String word) {
+    /**
+     * Trims and lowercases a word - returning it as is, if it already is.
+     * Letters are folded the same way they're classified, regardless of
+     * the default locale, so this is the form to key words by when
+     * comparing them with what the syllabifier sees.
+     */
+    public static String normalizeWord(String word) {
         if (word == null) return "";
 
-        return word.trim().toLowerCase();
-    }
+        var trimmed = word.trim();
 
-    private String normalizeSyllable(String syllable) {
-        var normalized = ForcedBreak.stripForcedBreaks(syllable);
-        normalized = normalized.replaceAll("ў", "у");
+        int i = 0;
+        while (i < trimmed.length() && LetterClassifier.toLowerCase(trimmed.charAt(i)) == trimmed.charAt(i)) i++;
+        if (i == trimmed.length()) return trimmed;
 
-        return normalized;
-    }
+        var folded = trimmed.toCharArray();
+        for (; i < folded.length; i++) folded[i] = LetterClassifier.toLowerCase(folded[i]);
 
-    private boolean matches(String str, String sub, int startIdx, int endIdx) {
-        int len = endIdx - startIdx;
-        if (len != sub.length()) return false;
+        return new String(folded);
+    }
 
-        for (int i = startIdx, j = 0; i < endIdx; i++, j++) {
-            if (str.charAt(i) != sub.charAt(j)) return false;
+    /*
+     * The syllable occupying [from, to) of a normalized word, without forced
+     * break markers, and with 'ў' as 'у'. Copies only what it must.
+     */
+    static String normalizeSyllable(String norm, int from, int to) {
+        int i = from;
+        while (i < to && norm.charAt(i) != ForcedBreak.MARKER && norm.charAt(i) != 'ў') i++;
+        if (i == to) return norm.substring(from, to);
+
+        var syllable = new StringBuilder(to - from).append(norm, from, i);
+        for (; i < to; i++) {
+            char ch = norm.charAt(i);
+            if (ch != ForcedBreak.MARKER) syllable.append(ch == 'ў' ? 'у' : ch);
         }
 
-        return true;
+        return syllable.toString();
     }
 
-    private long countVowels(String word) {
-        return word.chars()
-                .mapToObj(c -> (char) c)
-                .filter(LetterClassifier::isVowel)
-                .count();
+    private static int countVowels(CharSequence word, int start, int end) {
+        int nVowels = 0;
+
+        for (int i = start; i < end; i++) {
+            if (LetterClassifier.isVowel(LetterClassifier.toLowerCase(word.charAt(i)))) nVowels++;
+        }
+
+        return nVowels;
     }
 }
@@ -0,0 +1,141 @@
+package chernorizets.bg.syllabifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The syllabifications of many words - e.g. a whole lexicon - held as
+ * sequences of ids from a {@link SyllableTable}, packed end to end into one
+ * {@code int} array.
+ * <p>
+ * A word takes 4 bytes per syllable, plus 4 for where its sequence starts:
+ * 16 bytes for a typical three-syllable word, against a couple of hundred
+ * for a {@code List<String>} of its syllables. The syllable strings
+ * themselves are stored once per distinct syllable, in the table.
+ * <p>
+ * Sequences are numbered from 0, in the order they're added. Adding is not
+ * thread-safe; once all the words are in, instances can be shared between
+ * threads for reading.
+ */
+public final class SyllableSequences {
+
+    private final SyllableTable table;
+
+    private int[] ids;
+
+    // Sequence i is ids[starts[i], starts[i + 1])
+    private int[] starts;
+
+    private int size;
+
+    public SyllableSequences(SyllableTable table) {
+        this(table, 1024);
+    }
+
+    /**
+     * @param expectedWords the number of sequences to make room for
+     */
+    public SyllableSequences(SyllableTable table, int expectedWords) {
+        this.table = table;
+        this.ids = new int[Math.max(16, 3 * expectedWords)];
+        this.starts = new int[Math.max(16, expectedWords + 1)];
+    }
+
+    /** The table the ids are from. */
+    public SyllableTable table() {
+        return table;
+    }
+
+    /** The number of sequences. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Syllabifies a word, and adds its syllables.
+     *
+     * @return the number of the sequence
+     */
+    public int add(Syllabifier syllabifier, String word) {
+        return add(syllabifier.syllabifyIds(word, table));
+    }
+
+    /**
+     * Adds a sequence of syllable ids from the table.
+     *
+     * @return the number of the sequence
+     */
+    public int add(int[] sequence) {
+        int start = starts[size];
+        if (start + sequence.length > ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(start + sequence.length, ids.length + (ids.length >> 1)));
+        }
+        if (size + 2 > starts.length) {
+            starts = Arrays.copyOf(starts, Math.max(size + 2, starts.length + (starts.length >> 1)));
+        }
+
+        System.arraycopy(sequence, 0, ids, start, sequence.length);
+        starts[size + 1] = start + sequence.length;
+
+        return size++;
+    }
+
+    /** The number of syllables in a sequence. */
+    public int length(int idx) {
+        checkIndex(idx);
+        return starts[idx + 1] - starts[idx];
+    }
+
+    /** The id of syllable k of a sequence. */
+    public int id(int idx, int k) {
+        if (k < 0 || k >= length(idx)) {
+            throw new IndexOutOfBoundsException("Syllable " + k + " of sequence " + idx);
+        }
+
+        return ids[starts[idx] + k];
+    }
+
+    /** The ids of a sequence, copied into a new array. */
+    public int[] ids(int idx) {
+        checkIndex(idx);
+        return Arrays.copyOfRange(ids, starts[idx], starts[idx + 1]);
+    }
+
+    /**
+     * The syllables of a sequence, the same as {@link Syllabifier#syllabify}
+     * returns them for its word.
+     */
+    public List<String> syllables(int idx) {
+        checkIndex(idx);
+
+        var syllables = new ArrayList<String>(starts[idx + 1] - starts[idx]);
+        for (int i = starts[idx]; i < starts[idx + 1]; i++) syllables.add(table.syllable(ids[i]));
+
+        return syllables;
+    }
+
+    /** Whether two sequences have the same syllables - comparing ids only. */
+    public boolean sameSyllables(int idx, int otherIdx) {
+        checkIndex(idx);
+        checkIndex(otherIdx);
+
+        return Arrays.equals(ids, starts[idx], starts[idx + 1], ids, starts[otherIdx], starts[otherIdx + 1]);
+    }
+
+    /** Frees the room reserved for sequences not yet added. */
+    public void trimToSize() {
+        ids = Arrays.copyOf(ids, starts[size]);
+        starts = Arrays.copyOf(starts, size + 1);
+    }
+
+    private void checkIndex(int idx) {
+        if (idx < 0 || idx >= size) throw new IndexOutOfBoundsException("No sequence " + idx);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SyllableSequences(%d words, %d syllables, %d distinct)",
+                size, starts[size], table.size());
+    }
+}
@@ -0,0 +1,162 @@
+package chernorizets.bg.syllabifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A dictionary of syllables, giving each distinct one a small int id - 0,
+ * 1, 2 and so on, in the order they're first seen. Bulgarian has only a few
+ * thousand distinct syllables, so a lexicon's syllabifications take far less
+ * memory as ids (see {@link SyllableSequences}) than as strings, and
+ * comparing or grouping syllables is comparing ints.
+ * <p>
+ * Syllables are meant to be normalized the way {@link Syllabifier#syllabify}
+ * returns them - {@link Syllabifier#syllabifyIds} interns them that way - but
+ * the table itself takes any text as is.
+ * <p>
+ * The table only ever grows: an id, once given, always stands for the same
+ * syllable. Instances are thread-safe. Looking a syllable up takes no locks,
+ * and allocates nothing if it's already there; adding a new one takes a lock.
+ */
+public final class SyllableTable {
+
+    /** Returned by {@link #find} for syllables not in the table. */
+    public static final int NOT_FOUND = -1;
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private static final int INITIAL_SLOTS = 1 << 12;
+
+    // Open-addressing hash table: each slot holds the id of a syllable plus
+    // 1, or 0 if empty. Slots are set with release semantics, after the
+    // syllable is stored, so a reader that sees an id also sees the syllable.
+    // Replaced with a bigger one, under the lock, when half full.
+    private volatile AtomicIntegerArray slots = new AtomicIntegerArray(INITIAL_SLOTS);
+
+    // Syllables by id, in chunks, so that growing never copies them
+    private volatile String[][] chunks = new String[1][CHUNK_SIZE];
+
+    private volatile int size;
+
+    /** The number of distinct syllables. */
+    public int size() {
+        return size;
+    }
+
+    /** The id of a syllable, adding it if it's new. */
+    public int intern(CharSequence syllable) {
+        return intern(syllable, 0, syllable.length());
+    }
+
+    /** The id of the syllable occupying [from, to) of a text, adding it if it's new. */
+    public int intern(CharSequence text, int from, int to) {
+        int id = find(text, from, to);
+        return id != NOT_FOUND ? id : add(text, from, to);
+    }
+
+    /** The id of a syllable, or {@link #NOT_FOUND} if it's not in the table. */
+    public int find(CharSequence syllable) {
+        return find(syllable, 0, syllable.length());
+    }
+
+    /** The id of the syllable occupying [from, to) of a text, or {@link #NOT_FOUND}. */
+    public int find(CharSequence text, int from, int to) {
+        var slots = this.slots;
+        int mask = slots.length() - 1;
+
+        for (int i = hash(text, from, to) & mask; ; i = (i + 1) & mask) {
+            int slot = slots.getAcquire(i);
+            if (slot == 0) return NOT_FOUND;
+            if (contentEquals(syllable(slot - 1), text, from, to)) return slot - 1;
+        }
+    }
+
+    /**
+     * The syllable with a given id.
+     *
+     * @throws IndexOutOfBoundsException if the table has no such id
+     */
+    public String syllable(int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException("No syllable with id " + id);
+
+        return chunks[id >>> CHUNK_BITS][id & (CHUNK_SIZE - 1)];
+    }
+
+    /** The syllables with the given ids, in order. */
+    public List<String> syllables(int[] ids) {
+        var syllables = new ArrayList<String>(ids.length);
+        for (int id : ids) syllables.add(syllable(id));
+
+        return syllables;
+    }
+
+    // Rechecks under the lock, since another thread may have added it.
+    private synchronized int add(CharSequence text, int from, int to) {
+        int id = find(text, from, to);
+        if (id != NOT_FOUND) return id;
+
+        id = size;
+        if ((id >>> CHUNK_BITS) == chunks.length) {
+            var grown = Arrays.copyOf(chunks, chunks.length * 2);
+            for (int c = chunks.length; c < grown.length; c++) grown[c] = new String[CHUNK_SIZE];
+            chunks = grown;
+        }
+        chunks[id >>> CHUNK_BITS][id & (CHUNK_SIZE - 1)] = text.subSequence(from, to).toString();
+        size = id + 1;
+
+        if (2 * (id + 1) > slots.length()) {
+            slots = rehash(slots.length() * 2, id + 1);
+        } else {
+            insert(slots, text, from, to, id);
+        }
+
+        return id;
+    }
+
+    private AtomicIntegerArray rehash(int nSlots, int nSyllables) {
+        var rehashed = new AtomicIntegerArray(nSlots);
+
+        for (int id = 0; id < nSyllables; id++) {
+            var syllable = syllable(id);
+            insert(rehashed, syllable, 0, syllable.length(), id);
+        }
+
+        return rehashed;
+    }
+
+    private static void insert(AtomicIntegerArray slots, CharSequence text, int from, int to, int id) {
+        int mask = slots.length() - 1;
+
+        int i = hash(text, from, to) & mask;
+        while (slots.get(i) != 0) i = (i + 1) & mask;
+
+        slots.setRelease(i, id + 1);
+    }
+
+    private static int hash(CharSequence text, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) h = 31 * h + text.charAt(i);
+
+        // Spread the bits - syllables are short, and their hashes close.
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean contentEquals(String syllable, CharSequence text, int from, int to) {
+        if (syllable.length() != to - from) return false;
+
+        for (int i = 0; i < syllable.length(); i++) {
+            if (syllable.charAt(i) != text.charAt(from + i)) return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "SyllableTable(" + size + " syllables)";
+    }
+}
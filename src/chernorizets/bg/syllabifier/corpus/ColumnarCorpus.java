@@ -0,0 +1,256 @@
+package chernorizets.bg.syllabifier.corpus;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A syllabified word list with word frequencies, memory-mapped from a file
+ * written by {@link ColumnarCorpusWriter}. Words are numbered from 0, and any
+ * word's syllables and frequency can be read by its id in constant time,
+ * without reading the rest of the file.
+ * <p>
+ * The file is columnar - one section per attribute of the words, so that e.g.
+ * syllable count statistics only touch the break masks and frequencies:
+ * <pre>
+ *   header:           magic "BGSC", version, word count, overflow count, section offsets (longs)
+ *   masks:            one long per word - its break mask, or 0 if it's in the overflow sections or has no syllables
+ *   frequencies:      one long per word
+ *   word offsets:     one long per word, plus the end - where the word starts in the word data
+ *   word data:        the words, as UTF-8
+ *   overflow ids:     one int per word longer than 64 characters, in increasing order
+ *   overflow offsets: one long per overflow word, plus the end - where its breaks start in the overflow data
+ *   overflow data:    the break offsets of the overflow words, as ints
+ * </pre>
+ * Break masks are the same as in {@code SyllabifiedBatch}: bit <i>k</i> is set
+ * if a syllable starts at index <i>k</i> of the word, and bit 0 is always set.
+ * Sections start 8-byte aligned, and each must be smaller than 2 GiB - so
+ * a file holds up to about 268 million words.
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class ColumnarCorpus {
+
+    static final int MAGIC = 0x42475343; // "BGSC"
+    static final int VERSION = 1;
+
+    // Section indices, in file order
+    static final int MASKS = 0;
+    static final int FREQUENCIES = 1;
+    static final int WORD_OFFSETS = 2;
+    static final int WORD_DATA = 3;
+    static final int OVERFLOW_IDS = 4;
+    static final int OVERFLOW_OFFSETS = 5;
+    static final int OVERFLOW_DATA = 6;
+    static final int N_SECTIONS = 7;
+
+    static final int SECTIONS_OFFSET = 4 * Integer.BYTES;
+    static final int HEADER_SIZE = SECTIONS_OFFSET + N_SECTIONS * Long.BYTES;
+
+    /**
+     * The break mask of words in the overflow sections, and of words with no
+     * syllables - those with no letters - which aren't in them.
+     */
+    static final long OVERFLOW = 0;
+
+    /** The longest word a file can hold. */
+    public static final int MAX_WORD_LENGTH = 1 << 16;
+
+    private final ByteBuffer[] sections = new ByteBuffer[N_SECTIONS];
+    private final int wordCount;
+    private final int overflowCount;
+
+    private ColumnarCorpus(FileChannel channel) throws IOException {
+        var header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header) != -1) ;
+        header.flip();
+
+        if (header.remaining() < HEADER_SIZE || header.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a columnar corpus file");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported columnar corpus version: " + header.getInt(4));
+        }
+
+        this.wordCount = header.getInt(8);
+        this.overflowCount = header.getInt(12);
+
+        long[] sizes = {
+                (long) wordCount * Long.BYTES,
+                (long) wordCount * Long.BYTES,
+                (wordCount + 1L) * Long.BYTES,
+                -1,
+                (long) overflowCount * Integer.BYTES,
+                (overflowCount + 1L) * Long.BYTES,
+                -1
+        };
+
+        for (int s = 0; s < N_SECTIONS; s++) {
+            long start = header.getLong(SECTIONS_OFFSET + s * Long.BYTES);
+            long end = s + 1 < N_SECTIONS ? header.getLong(SECTIONS_OFFSET + (s + 1) * Long.BYTES) : channel.size();
+            long size = sizes[s] >= 0 ? sizes[s] : end - start;
+
+            if (start + size > channel.size() || size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Corrupt columnar corpus file: section " + s);
+            }
+
+            sections[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        }
+    }
+
+    public static ColumnarCorpus open(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new ColumnarCorpus(channel);
+        }
+    }
+
+    /** The number of words. */
+    public int size() {
+        return wordCount;
+    }
+
+    public String word(int id) {
+        checkId(id);
+
+        var offsets = sections[WORD_OFFSETS];
+        int start = (int) offsets.getLong(id * Long.BYTES);
+        int end = (int) offsets.getLong((id + 1) * Long.BYTES);
+
+        var bytes = new byte[end - start];
+        sections[WORD_DATA].duplicate().position(start).get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public long frequency(int id) {
+        checkId(id);
+
+        return sections[FREQUENCIES].getLong(id * Long.BYTES);
+    }
+
+    /**
+     * The word's break mask, or 0 if it's longer than 64 characters - use
+     * {@link #breakOffsets} for those - or has no syllables.
+     */
+    public long breakMask(int id) {
+        checkId(id);
+
+        return sections[MASKS].getLong(id * Long.BYTES);
+    }
+
+    public int syllableCount(int id) {
+        long mask = breakMask(id);
+        if (mask != OVERFLOW) return Long.bitCount(mask);
+
+        int o = overflowIndex(id);
+        return o < 0 ? 0 : (int) (overflowEnd(o) - overflowStart(o)) / Integer.BYTES + 1;
+    }
+
+    /**
+     * Writes the indices in the word where every syllable but the first one
+     * starts into a buffer, which must have room for them.
+     *
+     * @return the number of syllables
+     */
+    public int breakOffsets(int id, int[] breakOffsets) {
+        long mask = breakMask(id);
+        int nBreaks = 0;
+
+        if (mask != OVERFLOW) {
+            for (long m = mask & ~1L; m != 0; m &= m - 1) {
+                breakOffsets[nBreaks++] = Long.numberOfTrailingZeros(m);
+            }
+        } else {
+            int o = overflowIndex(id);
+            if (o < 0) return 0;
+
+            var data = sections[OVERFLOW_DATA];
+
+            for (long pos = overflowStart(o); pos < overflowEnd(o); pos += Integer.BYTES) {
+                breakOffsets[nBreaks++] = data.getInt((int) pos);
+            }
+        }
+
+        return nBreaks + 1;
+    }
+
+    /** The word, cut into syllables. */
+    public List<String> syllables(int id) {
+        var word = word(id);
+        var breakOffsets = new int[Math.max(1, word.length())];
+        int nSyllables = breakOffsets(id, breakOffsets);
+        if (nSyllables == 0) return List.of();
+
+        var syllables = new ArrayList<String>(nSyllables);
+        int prev = 0;
+        for (int i = 0; i < nSyllables - 1; i++) {
+            syllables.add(word.substring(prev, breakOffsets[i]));
+            prev = breakOffsets[i];
+        }
+        syllables.add(word.substring(prev));
+
+        return syllables;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= wordCount) {
+            throw new IndexOutOfBoundsException("Word id " + id + " out of range [0, " + wordCount + ")");
+        }
+    }
+
+    // Binary search in the overflow ids; -1 for a word with no syllables
+    private int overflowIndex(int id) {
+        var ids = sections[OVERFLOW_IDS];
+
+        int lo = 0, hi = overflowCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midId = ids.getInt(mid * Integer.BYTES);
+
+            if (midId < id) lo = mid + 1;
+            else if (midId > id) hi = mid - 1;
+            else return mid;
+        }
+
+        return -1;
+    }
+
+    private long overflowStart(int o) {
+        return sections[OVERFLOW_OFFSETS].getLong(o * Long.BYTES);
+    }
+
+    private long overflowEnd(int o) {
+        return sections[OVERFLOW_OFFSETS].getLong((o + 1) * Long.BYTES);
+    }
+
+    /*
+     * Usage: ColumnarCorpus FILE [FIRST_ID [COUNT]]
+     *
+     * Prints words as "word --> syl-la-bles (frequency)" lines.
+     */
+    public static void main(String ... args) throws IOException {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: ColumnarCorpus FILE [FIRST_ID [COUNT]]");
+            System.exit(2);
+        }
+
+        var corpus = open(Path.of(args[0]));
+        int first = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : corpus.size() - first;
+
+        var out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        for (int id = first; id < Math.min(corpus.size(), first + count); id++) {
+            out.printf("%s --> %s (%d)%n", corpus.word(id), String.join("-", corpus.syllables(id)),
+                    corpus.frequency(id));
+        }
+
+        out.flush();
+    }
+}
@@ -0,0 +1,213 @@
+package chernorizets.bg.syllabifier.corpus;
+
+import chernorizets.bg.syllabifier.Syllabifier;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes syllabified words and their frequencies to a {@link ColumnarCorpus}
+ * file, streaming: each column is appended to a temporary file next to the
+ * output as words are added, and the columns are concatenated on close. Memory
+ * use is constant, however many words are written.
+ * <p>
+ * Words are written as given - counting the frequencies of distinct words is
+ * up to the caller, e.g. with a frequency list.
+ * <p>
+ * Usage: ColumnarCorpusWriter FREQUENCY_LIST OUTPUT
+ * <p>
+ * The frequency list has one word per line, optionally followed by its count
+ * (1 if missing). Lines starting with '#' are skipped.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class ColumnarCorpusWriter implements Closeable {
+
+    private final Syllabifier syllabifier;
+    private final Path output;
+
+    // The sections of the file, in order, as temporary files
+    private final Path[] sectionFiles = new Path[ColumnarCorpus.N_SECTIONS];
+    private final DataOutputStream[] sections = new DataOutputStream[ColumnarCorpus.N_SECTIONS];
+
+    private final int[] breakOffsets = new int[ColumnarCorpus.MAX_WORD_LENGTH];
+
+    private int wordCount;
+    private int overflowCount;
+    private long wordDataSize;
+    private long overflowDataSize;
+
+    private boolean closed;
+
+    public ColumnarCorpusWriter(Syllabifier syllabifier, Path output) throws IOException {
+        this.syllabifier = syllabifier;
+        this.output = output;
+
+        var dir = output.toAbsolutePath().getParent();
+
+        try {
+            for (int s = 0; s < ColumnarCorpus.N_SECTIONS; s++) {
+                sectionFiles[s] = Files.createTempFile(dir, output.getFileName() + ".", ".section" + s);
+                sections[s] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(sectionFiles[s])));
+            }
+        } catch (IOException e) {
+            deleteSections();
+            throw e;
+        }
+    }
+
+    /**
+     * Syllabifies a word, and appends it. Words are numbered in the order
+     * they're added, from 0.
+     *
+     * @return the word's id
+     */
+    public int add(String word, long frequency) throws IOException {
+        if (closed) throw new IllegalStateException("Writer is closed");
+        if (word.length() > ColumnarCorpus.MAX_WORD_LENGTH) {
+            throw new IllegalArgumentException("Word too long: " + word.length() + " characters");
+        }
+
+        int nSyllables = syllabifier.syllabifyInto(word, breakOffsets);
+
+        if (nSyllables == 0) {
+            // No letters - not in the overflow sections, whatever the length
+            sections[ColumnarCorpus.MASKS].writeLong(ColumnarCorpus.OVERFLOW);
+        } else if (word.length() <= Long.SIZE) {
+            long mask = 1L;
+            for (int i = 0; i < nSyllables - 1; i++) mask |= 1L << breakOffsets[i];
+
+            sections[ColumnarCorpus.MASKS].writeLong(mask);
+        } else {
+            sections[ColumnarCorpus.MASKS].writeLong(ColumnarCorpus.OVERFLOW);
+
+            sections[ColumnarCorpus.OVERFLOW_IDS].writeInt(wordCount);
+            sections[ColumnarCorpus.OVERFLOW_OFFSETS].writeLong(overflowDataSize);
+            for (int i = 0; i < nSyllables - 1; i++) sections[ColumnarCorpus.OVERFLOW_DATA].writeInt(breakOffsets[i]);
+
+            overflowDataSize += (long) (nSyllables - 1) * Integer.BYTES;
+            overflowCount++;
+        }
+
+        sections[ColumnarCorpus.FREQUENCIES].writeLong(frequency);
+
+        var bytes = word.getBytes(StandardCharsets.UTF_8);
+        sections[ColumnarCorpus.WORD_OFFSETS].writeLong(wordDataSize);
+        sections[ColumnarCorpus.WORD_DATA].write(bytes);
+        wordDataSize += bytes.length;
+
+        return wordCount++;
+    }
+
+    public int size() {
+        return wordCount;
+    }
+
+    /**
+     * Writes out the file. The temporary column files are deleted, whether
+     * or not that succeeds.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+
+        try {
+            // The end offsets of the variable-length sections
+            sections[ColumnarCorpus.WORD_OFFSETS].writeLong(wordDataSize);
+            sections[ColumnarCorpus.OVERFLOW_OFFSETS].writeLong(overflowDataSize);
+
+            for (var section : sections) section.close();
+
+            concatenate();
+        } finally {
+            deleteSections();
+        }
+    }
+
+    private void concatenate() throws IOException {
+        try (var out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var header = ByteBuffer.allocate(ColumnarCorpus.HEADER_SIZE);
+            header.putInt(ColumnarCorpus.MAGIC)
+                    .putInt(ColumnarCorpus.VERSION)
+                    .putInt(wordCount)
+                    .putInt(overflowCount);
+
+            // Sections start 8-byte aligned, after the header.
+            long pos = ColumnarCorpus.HEADER_SIZE;
+            for (var file : sectionFiles) {
+                header.putLong(pos);
+                pos = align(pos + Files.size(file));
+            }
+
+            header.flip();
+            while (header.hasRemaining()) out.write(header);
+
+            for (int s = 0; s < ColumnarCorpus.N_SECTIONS; s++) {
+                long start = header.getLong(ColumnarCorpus.SECTIONS_OFFSET + s * Long.BYTES);
+
+                try (var in = FileChannel.open(sectionFiles[s], StandardOpenOption.READ)) {
+                    long size = in.size();
+                    for (long copied = 0; copied < size; ) {
+                        copied += in.transferTo(copied, size - copied, out.position(start + copied));
+                    }
+                }
+            }
+
+            // Pad the last section, so the file ends aligned too.
+            if (out.size() < pos) out.write(ByteBuffer.allocate(1), pos - 1);
+        }
+    }
+
+    private static long align(long pos) {
+        return (pos + Long.BYTES - 1) & -Long.BYTES;
+    }
+
+    private void deleteSections() {
+        for (int s = 0; s < ColumnarCorpus.N_SECTIONS; s++) {
+            try {
+                if (sections[s] != null) sections[s].close();
+                if (sectionFiles[s] != null) Files.deleteIfExists(sectionFiles[s]);
+            } catch (IOException e) {
+                // Best effort - it's a temporary file.
+            }
+        }
+    }
+
+    public static void main(String ... args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: ColumnarCorpusWriter FREQUENCY_LIST OUTPUT");
+            System.exit(2);
+        }
+
+        long t0 = System.nanoTime();
+        int nWords;
+
+        try (var reader = Files.newBufferedReader(Path.of(args[0]), StandardCharsets.UTF_8);
+             var writer = new ColumnarCorpusWriter(new Syllabifier(), Path.of(args[1]))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                var content = line.strip();
+                if (content.isEmpty() || content.startsWith("#")) continue;
+
+                var fields = content.split("\\s+");
+                if (fields[0].length() > ColumnarCorpus.MAX_WORD_LENGTH) continue;
+
+                writer.add(fields[0], fields.length > 1 ? Long.parseLong(fields[1]) : 1);
+            }
+
+            nWords = writer.size();
+        }
+
+        System.err.printf("Wrote %,d words to %s in %.2f s%n",
+                nWords, args[1], (System.nanoTime() - t0) / 1e9);
+    }
+}
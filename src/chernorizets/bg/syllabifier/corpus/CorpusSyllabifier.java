@@ -0,0 +1,382 @@
+package chernorizets.bg.syllabifier.corpus;
+
+import chernorizets.bg.syllabifier.LetterMasks;
+import chernorizets.bg.syllabifier.Syllabifier;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Syllabifies running text - a whole UTF-8 corpus file, or a stream - in
+ * constant memory, regardless of the size of the input.
+ * <p>
+ * Files are memory-mapped a window at a time, and decoded into a fixed-size
+ * character buffer. Each buffer is classified whole into {@link LetterMasks} -
+ * with SIMD code, where available - and words are found and syllabified in
+ * place, from the masks. The text is written out with a separator inserted
+ * at every syllable break.
+ * Everything else is copied through unchanged:
+ * <ul>
+ *     <li>a word is a maximal run of Cyrillic letters, so hyphenated compounds
+ *     like джаста-праста are syllabified part by part</li>
+ *     <li>letter runs with any non-Cyrillic letters in them (DJ, SIM, iPhone-ът)
+ *     are passed through as they are</li>
+ *     <li>so are punctuation, digits and whitespace</li>
+ * </ul>
+ * Instances are not thread-safe - use one per thread.
+ */
+public class CorpusSyllabifier {
+
+    /** Separator for inserting soft hyphens, e.g. for web typesetting. */
+    public static final String SOFT_HYPHEN = "\u00AD";
+
+    // Decoded characters held in memory at once. This also caps the length
+    // of a word - longer letter runs are passed through unchanged.
+    private static final int CHAR_BUFFER_SIZE = 1 << 16;
+
+    // Size of the file region mapped at once
+    private static final long MAP_WINDOW_SIZE = 1L << 25;
+
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private final Syllabifier syllabifier;
+
+    private final String separator;
+
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+
+    private final int[] breakOffsets = new int[CHAR_BUFFER_SIZE];
+
+    private final LetterMasks masks;
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    // Holds text passed in as a CharSequence, growing as needed
+    private CharBuffer textChars = CharBuffer.allocate(256);
+
+    private Stats stats = new Stats();
+
+    public CorpusSyllabifier(Syllabifier syllabifier, String separator) {
+        this(syllabifier, separator, new LetterMasks());
+    }
+
+    /**
+     * @param masks where to classify the text - e.g. {@link LetterMasks#scalar()}
+     * to compare with the vectorized classification
+     */
+    public CorpusSyllabifier(Syllabifier syllabifier, String separator, LetterMasks masks) {
+        this.syllabifier = syllabifier;
+        this.separator = separator;
+        this.masks = masks;
+    }
+
+    /**
+     * Syllabifies a whole file into another one.
+     */
+    public Stats process(Path input, Path output) throws IOException {
+        try (var in = FileChannel.open(input, StandardOpenOption.READ);
+             var out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            return process(in, 0, in.size(), out);
+        }
+    }
+
+    /**
+     * Syllabifies the byte range [from, to) of a file, memory-mapping it a
+     * window at a time. The range should start and end on word boundaries.
+     */
+    public Stats process(FileChannel in, long from, long to, Writer out) throws IOException {
+        begin();
+
+        long windowStart = from;
+        while (true) {
+            var window = in.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                    Math.min(MAP_WINDOW_SIZE, to - windowStart));
+            boolean lastWindow = windowStart + window.limit() == to;
+
+            decode(window, lastWindow, out);
+            if (lastWindow) break;
+
+            // Continue from the first byte not decoded - possibly
+            // the start of a multi-byte sequence cut by the window.
+            windowStart += window.position();
+        }
+
+        return end(to - from, out);
+    }
+
+    /**
+     * Syllabifies everything that can be read from a channel, e.g. standard input.
+     */
+    public Stats process(ReadableByteChannel in, Writer out) throws IOException {
+        begin();
+
+        var bytes = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        long nBytes = 0;
+
+        while (true) {
+            int nRead = in.read(bytes);
+            if (nRead > 0) nBytes += nRead;
+
+            bytes.flip();
+            decode(bytes, nRead == -1, out);
+            if (nRead == -1) break;
+
+            bytes.compact();
+        }
+
+        return end(nBytes, out);
+    }
+
+    /**
+     * Syllabifies a piece of text already in memory, e.g. a line read from a
+     * pipe, into a writer - without flushing it. The text is taken to end
+     * on a word boundary. Counts go to the stats of the last run.
+     */
+    public void syllabifyText(CharSequence text, Writer out) throws IOException {
+        if (textChars.capacity() < text.length()) {
+            textChars = CharBuffer.allocate(Math.max(text.length(), 2 * textChars.capacity()));
+        }
+
+        textChars.clear();
+        textChars.append(text);
+        textChars.flip();
+
+        stats.chars += writeTokens(textChars, true, out);
+    }
+
+    private void begin() {
+        decoder.reset();
+        chars.clear();
+        stats = new Stats();
+    }
+
+    private Stats end(long nBytes, Writer out) throws IOException {
+        out.flush();
+
+        stats.bytes = nBytes;
+        stats.elapsedNanos = System.nanoTime() - stats.elapsedNanos;
+        return stats;
+    }
+
+    private void decode(ByteBuffer bytes, boolean endOfInput, Writer out) throws IOException {
+        while (true) {
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            if (result.isError()) result.throwException();
+
+            if (result.isUnderflow()) {
+                if (!endOfInput) {
+                    // Keep what's been decoded so far, but don't split words
+                    // until we know where they end.
+                    writeTokens(false, out);
+                    return;
+                }
+
+                flushDecoder();
+                writeTokens(true, out);
+                return;
+            }
+
+            // The character buffer is full - make room.
+            writeTokens(false, out);
+        }
+    }
+
+    private void flushDecoder() throws CharacterCodingException {
+        CoderResult result = decoder.flush(chars);
+        if (result.isError()) result.throwException();
+    }
+
+    /*
+     * Writes out all complete tokens in the character buffer, and keeps
+     * any trailing letter run which might continue past it.
+     */
+    private void writeTokens(boolean endOfInput, Writer out) throws IOException {
+        chars.flip();
+
+        int pos = writeTokens(chars, endOfInput, out);
+        stats.chars += pos;
+
+        chars.position(pos);
+        chars.compact();
+    }
+
+    /*
+     * Writes out the complete tokens in a flipped buffer, and returns where
+     * the first one that's not written starts.
+     */
+    private int writeTokens(CharBuffer buffer, boolean endOfInput, Writer out) throws IOException {
+        char[] text = buffer.array();
+        int limit = buffer.limit();
+
+        masks.classify(text, limit);
+
+        int pos = 0;
+        while (pos < limit) {
+            int tokenEnd = pos;
+            if (masks.isLetter(pos)) tokenEnd = masks.nextNonWordChar(pos);
+
+            if (tokenEnd == pos) {
+                // Not a letter - copy the run of non-letters through.
+                tokenEnd = masks.nextLetter(pos);
+                out.write(text, pos, tokenEnd - pos);
+                pos = tokenEnd;
+                continue;
+            }
+
+            // The word might continue past the buffer, unless it fills it.
+            if (tokenEnd == limit && !endOfInput && (pos > 0 || limit < buffer.capacity())) break;
+
+            writeWord(buffer, pos, tokenEnd, out);
+            pos = tokenEnd;
+        }
+
+        return pos;
+    }
+
+    private void writeWord(CharBuffer buffer, int start, int end, Writer out) throws IOException {
+        char[] text = buffer.array();
+        stats.words++;
+
+        // Words too long for the break offsets buffer - only possible in
+        // text passed in whole - are passed through too.
+        if (end - start > breakOffsets.length || !masks.isCyrillic(start, end)) {
+            out.write(text, start, end - start);
+            return;
+        }
+
+        int nSyllables = syllabifier.syllabifyInto(buffer, start, end, masks, breakOffsets);
+        stats.syllabifiedWords++;
+        stats.syllables += nSyllables;
+
+        int prev = start;
+        for (int i = 0; i < nSyllables - 1; i++) {
+            out.write(text, prev, breakOffsets[i] - prev);
+            out.write(separator);
+            prev = breakOffsets[i];
+        }
+
+        out.write(text, prev, end - prev);
+    }
+
+    static boolean isCyrillic(char[] text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if ((text[i] < 'Ѐ' || text[i] > 'ӿ') && !isCombiningMark(text[i])) return false;
+        }
+
+        return true;
+    }
+
+    /*
+     * Words are runs of letters, and the combining marks - e.g. stress
+     * accents - after them.
+     */
+    static boolean isWordChar(char ch) {
+        return Character.isLetter(ch) || isCombiningMark(ch);
+    }
+
+    private static boolean isCombiningMark(char ch) {
+        return ch >= '\u0300' && ch <= '\u036F';
+    }
+
+    /**
+     * Counters for a single run of the pipeline.
+     */
+    public static class Stats {
+        long bytes;
+        long chars;
+        long words;
+        long syllabifiedWords;
+        long syllables;
+        long elapsedNanos = System.nanoTime();
+
+        public long bytes() {
+            return bytes;
+        }
+
+        public long words() {
+            return words;
+        }
+
+        public long syllabifiedWords() {
+            return syllabifiedWords;
+        }
+
+        public long syllables() {
+            return syllables;
+        }
+
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double megabytesPerSecond() {
+            return (bytes / 1e6) / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d bytes, %,d words (%,d syllabified, %,d syllables) in %.2f s: %.1f MB/s",
+                    bytes, words, syllabifiedWords, syllables, elapsedNanos / 1e9, megabytesPerSecond());
+        }
+    }
+
+    /**
+     * Usage: CorpusSyllabifier [--separator=SEP | --soft-hyphen] INPUT [OUTPUT]
+     * <p>
+     * Writes to standard output if no output file is given, and reports
+     * throughput on standard error.
+     */
+    public static void main(String ... args) throws IOException {
+        String separator = "-";
+        int argIdx = 0;
+
+        for (; argIdx < args.length && args[argIdx].startsWith("--"); argIdx++) {
+            var arg = args[argIdx];
+
+            if (arg.equals("--soft-hyphen")) {
+                separator = SOFT_HYPHEN;
+            } else if (arg.startsWith("--separator=")) {
+                separator = arg.substring("--separator=".length());
+            } else {
+                System.err.println("Unknown option: " + arg);
+                System.exit(2);
+            }
+        }
+
+        if (argIdx >= args.length) {
+            System.err.println("Usage: CorpusSyllabifier [--separator=SEP | --soft-hyphen] INPUT [OUTPUT]");
+            System.exit(2);
+        }
+
+        var pipeline = new CorpusSyllabifier(new Syllabifier(), separator);
+        var input = Path.of(args[argIdx]);
+
+        Stats stats;
+        if (argIdx + 1 < args.length) {
+            stats = pipeline.process(input, Path.of(args[argIdx + 1]));
+        } else {
+            try (var in = FileChannel.open(input, StandardOpenOption.READ)) {
+                var out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+                stats = pipeline.process(in, 0, in.size(), out);
+            }
+        }
+
+        System.err.println(stats);
+    }
+}
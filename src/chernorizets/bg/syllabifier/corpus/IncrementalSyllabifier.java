@@ -0,0 +1,350 @@
+package chernorizets.bg.syllabifier.corpus;
+
+import chernorizets.bg.syllabifier.Syllabifier;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Keeps the syllable breaks of a text buffer - e.g. a document open in an
+ * editor, for hyphenation - up to date as the text is edited, without
+ * syllabifying it all over again.
+ * <p>
+ * Words are found like {@link CorpusSyllabifier} does. Each {@link #edit}
+ * re-syllabifies just the words it touches - the letter runs around the
+ * edited range - and reports the breaks that changed as a {@link Change}.
+ * <p>
+ * Both the text and the words' breaks are held in gap buffers, with the gap
+ * at the last edit. Words after the gap keep their offsets relative to the
+ * end of the text, so an edit doesn't shift them. An edit costs time in the
+ * length of the words it touches, the text it inserts, and its distance from
+ * the previous edit - so typing and deleting take the same time whatever the
+ * size of the document.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class IncrementalSyllabifier {
+
+    /**
+     * Breaks are kept as bit masks, like in {@code SyllabifiedBatch}, so
+     * longer words are left unbroken.
+     */
+    public static final int MAX_WORD_LENGTH = Long.SIZE;
+
+    private final Syllabifier syllabifier;
+
+    // The text: [0, gapStart) and [gapEnd, chars.length)
+    private char[] chars = new char[256];
+    private int gapStart = 0;
+    private int gapEnd = chars.length;
+
+    // The words with any breaks, in text order: [0, wordGapStart) and
+    // [wordGapEnd, wordStarts.length). Words before the gap hold their start
+    // offset, and words after it their start offset minus the text length.
+    private int[] wordStarts = new int[64];
+    private long[] wordMasks = new long[64];
+    private int wordGapStart = 0;
+    private int wordGapEnd = wordStarts.length;
+
+    // The region being re-syllabified, copied out of the gap buffer
+    private char[] region = new char[256];
+    private CharBuffer regionChars = CharBuffer.wrap(region);
+
+    private final int[] breakOffsets = new int[MAX_WORD_LENGTH];
+
+    public IncrementalSyllabifier(Syllabifier syllabifier) {
+        this.syllabifier = syllabifier;
+    }
+
+    public IncrementalSyllabifier(Syllabifier syllabifier, CharSequence text) {
+        this(syllabifier);
+        edit(0, 0, text);
+    }
+
+    /** The length of the text. */
+    public int length() {
+        return chars.length - (gapEnd - gapStart);
+    }
+
+    public char charAt(int index) {
+        if (index < 0 || index >= length()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range [0, " + length() + ")");
+        }
+
+        return index < gapStart ? chars[index] : chars[index + gapEnd - gapStart];
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(length())
+                .append(chars, 0, gapStart)
+                .append(chars, gapEnd, chars.length - gapEnd)
+                .toString();
+    }
+
+    /**
+     * Replaces a range of the text, and re-syllabifies the words it touches.
+     *
+     * @param offset where the edit starts
+     * @param removed the number of characters removed from there
+     * @param inserted the text inserted in their place
+     * @return the breaks that changed
+     */
+    public Change edit(int offset, int removed, CharSequence inserted) {
+        int length = length();
+        if (offset < 0 || removed < 0 || offset > length - removed) {
+            throw new IndexOutOfBoundsException("Edit [" + offset + ", " + offset + " + " + removed
+                    + ") out of range [0, " + length + "]");
+        }
+
+        // The letter runs around the edit, which may join or split words
+        int start = offset;
+        while (start > 0 && CorpusSyllabifier.isWordChar(charAt(start - 1))) start--;
+
+        int oldEnd = offset + removed;
+        while (oldEnd < length && CorpusSyllabifier.isWordChar(charAt(oldEnd))) oldEnd++;
+
+        int[] removedBreaks = removeWords(start, oldEnd);
+
+        moveGap(offset);
+        gapEnd += removed;
+        insert(inserted);
+
+        int newEnd = oldEnd - removed + inserted.length();
+        int[] addedBreaks = addWords(start, newEnd);
+
+        return new Change(start, oldEnd, newEnd, removedBreaks, addedBreaks);
+    }
+
+    /**
+     * The offsets in [from, to) where a syllable starts, other than at the
+     * start of a word - that is, where the text can be hyphenated.
+     */
+    public int[] breaks(int from, int to) {
+        var breaks = new Breaks();
+
+        int nWords = wordCount();
+        for (int w = firstWordFrom(from - MAX_WORD_LENGTH); w < nWords; w++) {
+            int wordStart = wordStart(w);
+            if (wordStart >= to) break;
+
+            // Just the breaks in range
+            long mask = wordMasks[slot(w)];
+            if (from > wordStart) mask &= from - wordStart < Long.SIZE ? -1L << (from - wordStart) : 0;
+            if (to - wordStart < Long.SIZE) mask &= (1L << (to - wordStart)) - 1;
+
+            breaks.add(wordStart, mask);
+        }
+
+        return breaks.toArray();
+    }
+
+    /*
+     * Removes the words in [start, end), and returns their breaks. The gap
+     * is left where they were.
+     */
+    private int[] removeWords(int start, int end) {
+        int length = length();
+
+        // Words before the gap start before the region, and words after
+        // it at or after its start.
+        while (wordGapStart > 0 && wordStarts[wordGapStart - 1] >= start) {
+            wordStarts[--wordGapEnd] = wordStarts[--wordGapStart] - length;
+            wordMasks[wordGapEnd] = wordMasks[wordGapStart];
+        }
+        while (wordGapEnd < wordStarts.length && wordStarts[wordGapEnd] + length < start) {
+            wordStarts[wordGapStart] = wordStarts[wordGapEnd] + length;
+            wordMasks[wordGapStart++] = wordMasks[wordGapEnd++];
+        }
+
+        var breaks = new Breaks();
+        while (wordGapEnd < wordStarts.length && wordStarts[wordGapEnd] + length < end) {
+            breaks.add(wordStarts[wordGapEnd] + length, wordMasks[wordGapEnd]);
+            wordGapEnd++;
+        }
+
+        return breaks.toArray();
+    }
+
+    /*
+     * Syllabifies the words in [start, end) of the text, and adds them
+     * before the gap. Returns their breaks.
+     */
+    private int[] addWords(int start, int end) {
+        int len = end - start;
+        if (region.length < len) {
+            region = new char[Math.max(len, 2 * region.length)];
+            regionChars = CharBuffer.wrap(region);
+        }
+        for (int i = 0; i < len; i++) region[i] = charAt(start + i);
+
+        var breaks = new Breaks();
+
+        int pos = 0;
+        while (pos < len) {
+            if (!Character.isLetter(region[pos])) {
+                pos++;
+                continue;
+            }
+
+            int wordEnd = pos;
+            while (wordEnd < len && CorpusSyllabifier.isWordChar(region[wordEnd])) wordEnd++;
+
+            if (wordEnd - pos <= MAX_WORD_LENGTH && CorpusSyllabifier.isCyrillic(region, pos, wordEnd)) {
+                int nSyllables = syllabifier.syllabifyInto(regionChars, pos, wordEnd, breakOffsets);
+
+                long mask = 1L;
+                for (int i = 0; i < nSyllables - 1; i++) mask |= 1L << (breakOffsets[i] - pos);
+
+                if (nSyllables > 1) {
+                    addWord(start + pos, mask);
+                    breaks.add(start + pos, mask);
+                }
+            }
+
+            pos = wordEnd;
+        }
+
+        return breaks.toArray();
+    }
+
+    private void addWord(int wordStart, long mask) {
+        if (wordGapStart == wordGapEnd) {
+            int capacity = wordStarts.length;
+            int tail = capacity - wordGapEnd;
+
+            wordStarts = Arrays.copyOf(wordStarts, 2 * capacity);
+            wordMasks = Arrays.copyOf(wordMasks, 2 * capacity);
+            System.arraycopy(wordStarts, wordGapEnd, wordStarts, 2 * capacity - tail, tail);
+            System.arraycopy(wordMasks, wordGapEnd, wordMasks, 2 * capacity - tail, tail);
+            wordGapEnd = 2 * capacity - tail;
+        }
+
+        wordStarts[wordGapStart] = wordStart;
+        wordMasks[wordGapStart++] = mask;
+    }
+
+    // Break offsets, as they're collected
+    private static final class Breaks {
+        int[] offsets = new int[16];
+        int size;
+
+        void add(int wordStart, long mask) {
+            for (long m = mask & ~1L; m != 0; m &= m - 1) {
+                if (size == offsets.length) offsets = Arrays.copyOf(offsets, 2 * size);
+                offsets[size++] = wordStart + Long.numberOfTrailingZeros(m);
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(offsets, size);
+        }
+    }
+
+    private int wordCount() {
+        return wordStarts.length - (wordGapEnd - wordGapStart);
+    }
+
+    // Where the w-th word is in the arrays
+    private int slot(int w) {
+        return w < wordGapStart ? w : w + wordGapEnd - wordGapStart;
+    }
+
+    private int wordStart(int w) {
+        return w < wordGapStart ? wordStarts[w] : wordStarts[slot(w)] + length();
+    }
+
+    // Binary search for the first word starting at or after a position
+    private int firstWordFrom(int pos) {
+        int lo = 0, hi = wordCount();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (wordStart(mid) < pos) lo = mid + 1;
+            else hi = mid;
+        }
+
+        return lo;
+    }
+
+    private void moveGap(int offset) {
+        if (offset < gapStart) {
+            int n = gapStart - offset;
+            System.arraycopy(chars, offset, chars, gapEnd - n, n);
+            gapStart -= n;
+            gapEnd -= n;
+        } else if (offset > gapStart) {
+            int n = offset - gapStart;
+            System.arraycopy(chars, gapEnd, chars, gapStart, n);
+            gapStart += n;
+            gapEnd += n;
+        }
+    }
+
+    private void insert(CharSequence text) {
+        int n = text.length();
+
+        if (gapEnd - gapStart < n) {
+            int tail = chars.length - gapEnd;
+            int capacity = Math.max(2 * chars.length, length() + n + 256);
+
+            var grown = new char[capacity];
+            System.arraycopy(chars, 0, grown, 0, gapStart);
+            System.arraycopy(chars, gapEnd, grown, capacity - tail, tail);
+
+            chars = grown;
+            gapEnd = capacity - tail;
+        }
+
+        for (int i = 0; i < n; i++) chars[gapStart++] = text.charAt(i);
+    }
+
+    /**
+     * The breaks changed by an edit. The text in [start, oldEnd) before the
+     * edit is [start, newEnd) after it. Breaks before the start stay where
+     * they were, and breaks after the old end move by the difference in
+     * length.
+     */
+    public static final class Change {
+        private final int start;
+        private final int oldEnd;
+        private final int newEnd;
+        private final int[] removedBreaks;
+        private final int[] addedBreaks;
+
+        Change(int start, int oldEnd, int newEnd, int[] removedBreaks, int[] addedBreaks) {
+            this.start = start;
+            this.oldEnd = oldEnd;
+            this.newEnd = newEnd;
+            this.removedBreaks = removedBreaks;
+            this.addedBreaks = addedBreaks;
+        }
+
+        public int start() {
+            return start;
+        }
+
+        public int oldEnd() {
+            return oldEnd;
+        }
+
+        public int newEnd() {
+            return newEnd;
+        }
+
+        /** The breaks in [start, oldEnd) before the edit, as offsets before it. */
+        public int[] removedBreaks() {
+            return removedBreaks.clone();
+        }
+
+        /** The breaks in [start, newEnd) after the edit. */
+        public int[] addedBreaks() {
+            return addedBreaks.clone();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%d, %d) -> [%d, %d): %s -> %s", start, oldEnd, start, newEnd,
+                    Arrays.toString(removedBreaks), Arrays.toString(addedBreaks));
+        }
+    }
+}
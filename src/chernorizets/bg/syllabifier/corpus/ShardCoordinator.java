@@ -0,0 +1,590 @@
+package chernorizets.bg.syllabifier.corpus;
+
+import chernorizets.bg.syllabifier.LetterMasks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Syllabifies corpus files too big for one process, by splitting them into
+ * shards and handing those out to worker processes - separate JVMs, each
+ * running {@link ShardWorker}, driven over their standard input and output.
+ * <p>
+ * Shards are byte ranges of the input files, of about the shard size, that
+ * end just past an ASCII whitespace byte - which is never part of a UTF-8
+ * sequence, or of a word - so every shard starts and ends between words.
+ * Each worker syllabifies the shards it's sent into part files, next to the
+ * output, and the parts are concatenated in input order once all of them are
+ * done. The output is exactly what {@link CorpusSyllabifier} makes of the
+ * input files one after another, however the shards were scheduled.
+ * <p>
+ * A shard fails if its worker reports an error, dies, or takes longer than
+ * the shard timeout - it's then killed. The shard is put back in
+ * the queue, to be retried by any worker - a worker that died is replaced -
+ * up to a number of retries, after which the whole run fails.
+ * <p>
+ * The workers only share a file system with the coordinator, so this runs on
+ * a single machine as it is; the per-shard throughput it reports is what to
+ * go by when sizing shards and workers for more.
+ */
+public final class ShardCoordinator {
+
+    public static final long DEFAULT_SHARD_SIZE = 64L << 20;
+
+    public static final int DEFAULT_RETRIES = 2;
+
+    public static final long DEFAULT_SHARD_TIMEOUT_SECONDS = 600;
+
+    // Bytes scanned at a time for a shard boundary
+    private static final int BOUNDARY_SCAN_SIZE = 1 << 16;
+
+    // How long a worker gets to exit once its input is closed
+    private static final long WORKER_EXIT_SECONDS = 5;
+
+    private final int nWorkers;
+
+    private final long shardSize;
+
+    private final int retries;
+
+    private final String separator;
+
+    private final List<String> jvmOptions;
+
+    private final long shardTimeoutSeconds;
+
+    /**
+     * A coordinator that gives each shard {@link #DEFAULT_SHARD_TIMEOUT_SECONDS}.
+     */
+    public ShardCoordinator(int nWorkers, long shardSize, int retries, String separator, List<String> jvmOptions) {
+        this(nWorkers, shardSize, retries, separator, jvmOptions, DEFAULT_SHARD_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * @param nWorkers   the number of worker processes
+     * @param shardSize  the size of a shard in bytes - the last one in a file,
+     *                   or one with no whitespace for a while, can differ
+     * @param retries    how many times to retry a failed shard
+     * @param separator  the syllable separator
+     * @param jvmOptions options for the worker JVMs, e.g. -Xmx512m
+     * @param shardTimeoutSeconds how long a worker gets for a shard, before
+     *                   it's killed and the shard fails
+     */
+    public ShardCoordinator(int nWorkers, long shardSize, int retries, String separator, List<String> jvmOptions,
+                            long shardTimeoutSeconds) {
+        if (nWorkers < 1) throw new IllegalArgumentException("Need at least one worker: " + nWorkers);
+        if (shardSize < 1) throw new IllegalArgumentException("Shard size must be positive: " + shardSize);
+        if (retries < 0) throw new IllegalArgumentException("Retries can't be negative: " + retries);
+        if (shardTimeoutSeconds < 1) {
+            throw new IllegalArgumentException("Shard timeout must be positive: " + shardTimeoutSeconds);
+        }
+
+        this.nWorkers = nWorkers;
+        this.shardSize = shardSize;
+        this.retries = retries;
+        this.separator = separator;
+        this.jvmOptions = List.copyOf(jvmOptions);
+        this.shardTimeoutSeconds = shardTimeoutSeconds;
+    }
+
+    /**
+     * A byte range [from, to) of an input file.
+     */
+    public static final class Shard {
+        final int id;
+        final Path input;
+        final long from;
+        final long to;
+
+        Shard(int id, Path input, long from, long to) {
+            this.id = id;
+            this.input = input;
+            this.from = from;
+            this.to = to;
+        }
+
+        /** The position of the shard in the output. */
+        public int id() {
+            return id;
+        }
+
+        public Path input() {
+            return input;
+        }
+
+        public long from() {
+            return from;
+        }
+
+        public long to() {
+            return to;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d (%s [%d, %d))", id, input, from, to);
+        }
+    }
+
+    /**
+     * A shard done, and how it went.
+     */
+    public static final class Result {
+        final Shard shard;
+        final int worker;
+        final int attempts;
+        final CorpusSyllabifier.Stats stats;
+
+        Result(Shard shard, int worker, int attempts, CorpusSyllabifier.Stats stats) {
+            this.shard = shard;
+            this.worker = worker;
+            this.attempts = attempts;
+            this.stats = stats;
+        }
+
+        public Shard shard() {
+            return shard;
+        }
+
+        /** The worker that did the shard, from 0. */
+        public int worker() {
+            return worker;
+        }
+
+        /** The number of times the shard was tried, 1 if it didn't fail. */
+        public int attempts() {
+            return attempts;
+        }
+
+        /** The worker's counters, throughput included. */
+        public CorpusSyllabifier.Stats stats() {
+            return stats;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Shard %s: %s, worker %d, attempt %d", shard, stats, worker, attempts);
+        }
+    }
+
+    /**
+     * Splits files into shards of about a given size, numbered in input order.
+     * Empty files have no shards.
+     */
+    static List<Shard> split(List<Path> inputs, long shardSize) throws IOException {
+        var shards = new ArrayList<Shard>();
+        var buffer = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+
+        for (var input : inputs) {
+            try (var in = FileChannel.open(input, StandardOpenOption.READ)) {
+                long size = in.size();
+
+                for (long from = 0; from < size; ) {
+                    long to = size - from <= shardSize ? size : nextBoundary(in, from + shardSize, size, buffer);
+                    shards.add(new Shard(shards.size(), input, from, to));
+                    from = to;
+                }
+            }
+        }
+
+        return shards;
+    }
+
+    // The position just past the first whitespace byte at or after pos,
+    // or the size if there's none.
+    private static long nextBoundary(FileChannel in, long pos, long size, ByteBuffer buffer) throws IOException {
+        while (pos < size) {
+            buffer.clear();
+            int n = in.read(buffer, pos);
+            if (n <= 0) break;
+
+            for (int i = 0; i < n; i++) {
+                byte b = buffer.get(i);
+                if (b == ' ' || b == '\n' || b == '\r' || b == '\t') return pos + i + 1;
+            }
+            pos += n;
+        }
+
+        return size;
+    }
+
+    /**
+     * Syllabifies files into one output, in order.
+     *
+     * @param onShardDone called as each shard is done, from the thread
+     *                    driving its worker
+     * @return the shards done, in input order
+     * @throws IOException if a shard fails more times than it's retried, or
+     *                     the output can't be written; the output is then
+     *                     left as it was
+     */
+    public List<Result> run(List<Path> inputs, Path output, Consumer<Result> onShardDone)
+            throws IOException, InterruptedException {
+        var shards = split(inputs, shardSize);
+
+        var dir = output.toAbsolutePath().getParent();
+        var parts = Files.createTempDirectory(dir, output.getFileName() + ".parts-");
+
+        try {
+            var results = schedule(shards, parts, onShardDone);
+            merge(shards, parts, output);
+            return results;
+        } finally {
+            try (var leftovers = Files.list(parts)) {
+                for (var part : (Iterable<Path>) leftovers::iterator) Files.delete(part);
+            }
+            Files.delete(parts);
+        }
+    }
+
+    private List<Result> schedule(List<Shard> shards, Path parts, Consumer<Result> onShardDone)
+            throws IOException, InterruptedException {
+        var run = new Run(shards, parts, onShardDone);
+
+        var drivers = new ArrayList<Thread>();
+        for (int i = 0; i < Math.min(nWorkers, shards.size()); i++) {
+            int worker = i;
+            var driver = new Thread(() -> run.drive(worker), "shard-worker-" + worker);
+            driver.start();
+            drivers.add(driver);
+        }
+
+        try {
+            for (var driver : drivers) driver.join();
+        } catch (InterruptedException e) {
+            run.failure.compareAndSet(null, new IOException("Interrupted"));
+            for (var driver : drivers) driver.join();
+            throw e;
+        } finally {
+            run.watchdog.shutdownNow();
+        }
+
+        if (run.failure.get() != null) throw run.failure.get();
+
+        var results = new ArrayList<Result>(shards.size());
+        for (int i = 0; i < shards.size(); i++) results.add(run.results.get(i));
+
+        return results;
+    }
+
+    private static Path part(Path parts, Shard shard) {
+        return parts.resolve(String.format("part-%06d", shard.id));
+    }
+
+    private static void merge(List<Shard> shards, Path parts, Path output) throws IOException {
+        var tmp = parts.resolve("merged");
+
+        try (var out = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            for (var shard : shards) {
+                var part = part(parts, shard);
+
+                try (var in = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long size = in.size();
+                    for (long pos = 0; pos < size; ) pos += in.transferTo(pos, size - pos, out);
+                }
+                Files.delete(part);
+            }
+        }
+
+        Files.move(tmp, output, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /*
+     * The shared state of one run: the queue of shards to do, and what's been
+     * done. Each worker process is driven by a thread of its own, which takes
+     * shards off the queue until they're all done, or one has failed for good.
+     */
+    private final class Run {
+        final List<Shard> shards;
+        final Path parts;
+        final Consumer<Result> onShardDone;
+
+        final LinkedBlockingQueue<Shard> queue;
+        final AtomicIntegerArray attempts;
+        final AtomicReferenceArray<Result> results;
+        final CountDownLatch remaining;
+        final AtomicReference<IOException> failure = new AtomicReference<>();
+
+        // Kills workers that take too long over a shard
+        final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(task -> {
+            var thread = new Thread(task, "shard-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Run(List<Shard> shards, Path parts, Consumer<Result> onShardDone) {
+            this.shards = shards;
+            this.parts = parts;
+            this.onShardDone = onShardDone;
+
+            this.queue = new LinkedBlockingQueue<>(shards);
+            this.attempts = new AtomicIntegerArray(shards.size());
+            this.results = new AtomicReferenceArray<>(shards.size());
+            this.remaining = new CountDownLatch(shards.size());
+        }
+
+        void drive(int id) {
+            Worker worker = null;
+
+            try {
+                while (remaining.getCount() > 0 && failure.get() == null) {
+                    // Failed shards may still come back to the queue.
+                    var shard = queue.poll(50, TimeUnit.MILLISECONDS);
+                    if (shard == null) continue;
+
+                    if (worker == null) worker = new Worker(id);
+                    int attempt = attempts.incrementAndGet(shard.id);
+
+                    String error;
+                    try {
+                        var reply = worker.send(shard, part(parts, shard), watchdog);
+                        if (reply[0].equals(ShardWorker.DONE)) {
+                            var result = new Result(shard, id, attempt, stats(reply));
+                            results.set(shard.id, result);
+                            onShardDone.accept(result);
+                            remaining.countDown();
+                            continue;
+                        }
+                        error = reply[2];
+                    } catch (IOException e) {
+                        error = e.getMessage();
+                        worker.kill();
+                        worker = null;
+                    }
+
+                    if (attempt <= retries) {
+                        System.err.printf("Shard %s failed on worker %d, retrying: %s%n", shard, id, error);
+                        queue.add(shard);
+                    } else {
+                        failure.compareAndSet(null, new IOException(String.format(
+                                "Shard %s failed on attempt %d, on worker %d, giving up: %s", shard, attempt, id, error)));
+                    }
+                }
+            } catch (IOException e) {
+                failure.compareAndSet(null, e);
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, new IOException("Interrupted"));
+            } catch (RuntimeException e) {
+                // E.g. from the callback. The other drivers stop, rather
+                // than wait for a shard that's never coming back.
+                failure.compareAndSet(null, new IOException("Driver of worker " + id + " failed: " + e, e));
+            } finally {
+                if (worker != null) worker.close();
+            }
+        }
+
+        private CorpusSyllabifier.Stats stats(String[] reply) {
+            var stats = new CorpusSyllabifier.Stats();
+            stats.bytes = Long.parseLong(reply[2]);
+            stats.words = Long.parseLong(reply[3]);
+            stats.syllabifiedWords = Long.parseLong(reply[4]);
+            stats.syllables = Long.parseLong(reply[5]);
+            stats.elapsedNanos = Long.parseLong(reply[6]);
+
+            return stats;
+        }
+    }
+
+    /*
+     * A worker JVM, on the coordinator's class path, and with its vector
+     * settings.
+     */
+    private final class Worker {
+        final int id;
+        final Process process;
+        final Writer commands;
+        final BufferedReader replies;
+
+        // Set by the watchdog before it kills the worker
+        volatile boolean timedOut;
+
+        Worker(int id) throws IOException {
+            this.id = id;
+
+            var command = new ArrayList<String>();
+            command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(jvmOptions);
+
+            if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+                command.add("--add-modules=jdk.incubator.vector");
+            }
+            var vector = System.getProperty(LetterMasks.VECTOR_PROPERTY);
+            if (vector != null) command.add("-D" + LetterMasks.VECTOR_PROPERTY + "=" + vector);
+
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(ShardWorker.class.getName());
+            command.add("--separator=" + separator);
+
+            this.process = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            this.commands = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+            this.replies = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        // The worker's reply, split into fields
+        String[] send(Shard shard, Path part, ScheduledExecutorService watchdog) throws IOException {
+            try {
+                commands.write(String.join("\t", ShardWorker.SHARD, Integer.toString(shard.id),
+                        Long.toString(shard.from), Long.toString(shard.to),
+                        shard.input.toAbsolutePath().toString(), part.toString()) + "\n");
+                commands.flush();
+            } catch (IOException e) {
+                // The pipe's closed - the worker's gone.
+                throw new IOException("Worker " + id + " exited" + exitStatus(), e);
+            }
+
+            String reply;
+            var deadline = watchdog.schedule(() -> {
+                timedOut = true;
+                kill();
+            }, shardTimeoutSeconds, TimeUnit.SECONDS);
+            try {
+                reply = replies.readLine();
+            } finally {
+                deadline.cancel(false);
+            }
+
+            if (timedOut) {
+                throw new IOException("Worker " + id + " took over " + shardTimeoutSeconds + " s, killed it");
+            }
+            if (reply == null) {
+                throw new IOException("Worker " + id + " exited" + exitStatus());
+            }
+
+            var fields = reply.split("\t", -1);
+            boolean done = fields[0].equals(ShardWorker.DONE) && fields.length == 7;
+            boolean failed = fields[0].equals(ShardWorker.FAILED) && fields.length == 3;
+            if (!(done || failed) || !fields[1].equals(Integer.toString(shard.id))) {
+                throw new IOException("Worker " + id + " sent a bad reply: " + reply);
+            }
+
+            return fields;
+        }
+
+        private String exitStatus() {
+            try {
+                return process.waitFor(WORKER_EXIT_SECONDS, TimeUnit.SECONDS)
+                        ? " with status " + process.exitValue()
+                        : "";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "";
+            }
+        }
+
+        void kill() {
+            process.destroyForcibly();
+        }
+
+        // Closing its input tells the worker to exit.
+        void close() {
+            try {
+                commands.close();
+                if (!process.waitFor(WORKER_EXIT_SECONDS, TimeUnit.SECONDS)) kill();
+            } catch (IOException e) {
+                kill();
+            } catch (InterruptedException e) {
+                kill();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Usage: ShardCoordinator [--workers=N] [--shard-mb=N] [--retries=N] [--shard-timeout=SECONDS]
+     * [--worker-opt=OPTION]... [--separator=SEP | --soft-hyphen] INPUT... OUTPUT
+     * <p>
+     * Reports each shard's throughput on standard error as it's done, and
+     * the totals at the end.
+     */
+    public static void main(String ... args) throws IOException, InterruptedException {
+        int nWorkers = Runtime.getRuntime().availableProcessors();
+        long shardSize = DEFAULT_SHARD_SIZE;
+        int retries = DEFAULT_RETRIES;
+        long shardTimeoutSeconds = DEFAULT_SHARD_TIMEOUT_SECONDS;
+        var jvmOptions = new ArrayList<String>();
+        String separator = "-";
+        int argIdx = 0;
+
+        for (; argIdx < args.length && args[argIdx].startsWith("--"); argIdx++) {
+            var arg = args[argIdx];
+
+            if (arg.startsWith("--workers=")) {
+                nWorkers = Integer.parseInt(arg.substring("--workers=".length()));
+            } else if (arg.startsWith("--shard-mb=")) {
+                shardSize = Long.parseLong(arg.substring("--shard-mb=".length())) << 20;
+            } else if (arg.startsWith("--retries=")) {
+                retries = Integer.parseInt(arg.substring("--retries=".length()));
+            } else if (arg.startsWith("--shard-timeout=")) {
+                shardTimeoutSeconds = Long.parseLong(arg.substring("--shard-timeout=".length()));
+            } else if (arg.startsWith("--worker-opt=")) {
+                jvmOptions.add(arg.substring("--worker-opt=".length()));
+            } else if (arg.equals("--soft-hyphen")) {
+                separator = CorpusSyllabifier.SOFT_HYPHEN;
+            } else if (arg.startsWith("--separator=")) {
+                separator = arg.substring("--separator=".length());
+            } else {
+                System.err.println("Unknown option: " + arg);
+                System.exit(2);
+            }
+        }
+
+        if (args.length - argIdx < 2) {
+            System.err.println("Usage: ShardCoordinator [--workers=N] [--shard-mb=N] [--retries=N] [--shard-timeout=SECONDS] "
+                    + "[--worker-opt=OPTION]... [--separator=SEP | --soft-hyphen] INPUT... OUTPUT");
+            System.exit(2);
+        }
+
+        var inputs = new ArrayList<Path>();
+        for (int i = argIdx; i < args.length - 1; i++) inputs.add(Path.of(args[i]));
+        var output = Path.of(args[args.length - 1]);
+
+        var coordinator = new ShardCoordinator(nWorkers, shardSize, retries, separator, jvmOptions,
+                shardTimeoutSeconds);
+
+        long start = System.nanoTime();
+        List<Result> results;
+        try {
+            results = coordinator.run(inputs, output, System.err::println);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        var total = new CorpusSyllabifier.Stats();
+        for (var result : results) {
+            total.bytes += result.stats.bytes;
+            total.words += result.stats.words;
+            total.syllabifiedWords += result.stats.syllabifiedWords;
+            total.syllables += result.stats.syllables;
+        }
+        total.elapsedNanos = elapsedNanos;
+
+        System.err.printf("%d shards on %d workers: %s%n", results.size(), Math.min(nWorkers, results.size()), total);
+    }
+}
@@ -0,0 +1,97 @@
+package chernorizets.bg.syllabifier.corpus;
+
+import chernorizets.bg.syllabifier.Syllabifier;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A worker process for {@link ShardCoordinator}: syllabifies the shards it's
+ * sent on standard input, each into its own part file, and replies on
+ * standard output once each one is done.
+ * <p>
+ * The protocol is a line per message, with tab-separated fields:
+ * <pre>
+ * SHARD  id  from  to  input  part                            (coordinator)
+ * DONE   id  bytes  words  syllabified  syllables  nanos      (worker)
+ * FAILED id  message                                          (worker)
+ * </pre>
+ * A part is written under a temporary name, and only renamed into place once
+ * it's complete - so a worker that dies halfway leaves no part behind. The
+ * worker exits when its standard input is closed.
+ */
+public final class ShardWorker {
+
+    static final String SHARD = "SHARD";
+    static final String DONE = "DONE";
+    static final String FAILED = "FAILED";
+
+    private ShardWorker() {
+    }
+
+    /**
+     * Usage: ShardWorker [--separator=SEP]
+     * <p>
+     * Started by the coordinator, not by hand.
+     */
+    public static void main(String ... args) throws IOException {
+        String separator = "-";
+        for (var arg : args) {
+            if (arg.startsWith("--separator=")) {
+                separator = arg.substring("--separator=".length());
+            } else {
+                System.err.println("Unknown option: " + arg);
+                System.exit(2);
+            }
+        }
+
+        var pipeline = new CorpusSyllabifier(new Syllabifier(), separator);
+
+        var in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        var out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true);
+
+        for (String line; (line = in.readLine()) != null; ) {
+            var fields = line.split("\t");
+            if (fields.length != 6 || !fields[0].equals(SHARD)) {
+                System.err.println("Bad command: " + line);
+                System.exit(2);
+            }
+
+            var id = fields[1];
+            try {
+                var stats = process(pipeline, Path.of(fields[4]), Long.parseLong(fields[2]),
+                        Long.parseLong(fields[3]), Path.of(fields[5]));
+
+                out.println(String.join("\t", DONE, id, Long.toString(stats.bytes()),
+                        Long.toString(stats.words()), Long.toString(stats.syllabifiedWords()),
+                        Long.toString(stats.syllables()), Long.toString(stats.elapsedNanos())));
+            } catch (IOException | RuntimeException e) {
+                // Tabs and newlines would break the protocol.
+                out.println(String.join("\t", FAILED, id, String.valueOf(e).replaceAll("\\s", " ")));
+            }
+        }
+    }
+
+    private static CorpusSyllabifier.Stats process(CorpusSyllabifier pipeline, Path input, long from, long to,
+                                                   Path part) throws IOException {
+        var tmp = part.resolveSibling(part.getFileName() + ".tmp");
+
+        CorpusSyllabifier.Stats stats;
+        try (var in = FileChannel.open(input, StandardOpenOption.READ);
+             var out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            stats = pipeline.process(in, from, to, out);
+        }
+
+        Files.move(tmp, part, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return stats;
+    }
+}
@@ -0,0 +1,168 @@
+package chernorizets.bg.syllabifier.corpus;
+
+import chernorizets.bg.syllabifier.Syllabifier;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * A line-oriented filter from standard input to standard output, for shell
+ * pipelines: one JVM stays up for any number of inputs, instead of one per
+ * word or file.
+ * <p>
+ * Output is buffered, and flushed whenever no more input is ready - so a
+ * stream of lines is written in large batches, but a caller that writes a
+ * line and waits for its answer, e.g. a coprocess, gets it right away.
+ * <p>
+ * Usage: SyllabifierFilter [--text] [--format=plain|arrow|tsv] [--separator=SEP | --soft-hyphen]
+ * <p>
+ * By default every line is a word, written out as its syllables joined by
+ * the separator ('-' by default), in one of the formats:
+ * <ul>
+ *     <li>{@code plain} - just the syllables: {@code маг-да-ноз}</li>
+ *     <li>{@code arrow} - like the test output: {@code магданоз --> маг-да-ноз}</li>
+ *     <li>{@code tsv} - the word, the syllables and their count: {@code магданоз\tмаг-да-ноз\t3}</li>
+ * </ul>
+ * Words are cut as written, keeping their case and accents; only the syllables
+ * are spelled the way {@link Syllabifier#syllabify} spells them, without
+ * forced break markers and with 'ў' as 'у': {@code над.живея --> над-жи-ве-я}.
+ * With {@code --text},
+ * lines are running text instead, syllabified in place like
+ * {@link CorpusSyllabifier} does, and the format doesn't apply.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class SyllabifierFilter {
+
+    enum Format { PLAIN, ARROW, TSV }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // The forced syllable break marker, as in над.живея
+    private static final char FORCED_BREAK = '.';
+
+    private final Syllabifier syllabifier;
+    private final Format format;
+    private final String separator;
+
+    // Running text mode, or null for one word per line
+    private final CorpusSyllabifier textSyllabifier;
+
+    private int[] breakOffsets = new int[64];
+
+    SyllabifierFilter(Syllabifier syllabifier, boolean text, Format format, String separator) {
+        this.syllabifier = syllabifier;
+        this.format = format;
+        this.separator = separator;
+        this.textSyllabifier = text ? new CorpusSyllabifier(syllabifier, separator) : null;
+    }
+
+    /**
+     * Filters lines until the end of input.
+     *
+     * @return the number of lines
+     */
+    long run(BufferedReader in, Writer out) throws IOException {
+        long nLines = 0;
+
+        for (String line; (line = in.readLine()) != null; nLines++) {
+            if (textSyllabifier != null) {
+                textSyllabifier.syllabifyText(line, out);
+            } else {
+                writeWord(line, out);
+            }
+            out.write('\n');
+
+            // Batch up output for as long as there's more input waiting.
+            if (!in.ready()) out.flush();
+        }
+
+        out.flush();
+        return nLines;
+    }
+
+    private void writeWord(String line, Writer out) throws IOException {
+        int start = 0, end = line.length();
+        while (start < end && Character.isWhitespace(line.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(line.charAt(end - 1))) end--;
+
+        if (breakOffsets.length < end - start) breakOffsets = new int[Math.max(end - start, 2 * breakOffsets.length)];
+        int nSyllables = syllabifier.syllabifyInto(line, start, end, breakOffsets);
+
+        if (format != Format.PLAIN) {
+            out.write(line, start, end - start);
+            out.write(format == Format.ARROW ? " --> " : "\t");
+        }
+
+        int prev = start;
+        for (int i = 0; i < nSyllables - 1; i++) {
+            writeSyllable(line, prev, breakOffsets[i], out);
+            out.write(separator);
+            prev = breakOffsets[i];
+        }
+        writeSyllable(line, prev, end, out);
+
+        if (format == Format.TSV) {
+            out.write('\t');
+            out.write(Integer.toString(nSyllables));
+        }
+    }
+
+    // Like Syllabifier.normalizeSyllable, but keeping the case
+    private static void writeSyllable(String line, int from, int to, Writer out) throws IOException {
+        for (int i = from; i < to; i++) {
+            char ch = line.charAt(i);
+
+            if (ch == FORCED_BREAK) continue;
+
+            if (ch == 'ў') out.write('у');
+            else if (ch == 'Ў') out.write('У');
+            else out.write(ch);
+        }
+    }
+
+    public static void main(String ... args) throws IOException {
+        boolean text = false;
+        var format = Format.PLAIN;
+        var separator = "-";
+
+        for (var arg : args) {
+            if (arg.equals("--text")) {
+                text = true;
+            } else if (arg.startsWith("--format=")) {
+                try {
+                    format = Format.valueOf(arg.substring("--format=".length()).toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    usage("Unknown format: " + arg.substring("--format=".length()));
+                }
+            } else if (arg.equals("--soft-hyphen")) {
+                separator = CorpusSyllabifier.SOFT_HYPHEN;
+            } else if (arg.startsWith("--separator=")) {
+                separator = arg.substring("--separator=".length());
+            } else {
+                usage("Unknown option: " + arg);
+            }
+        }
+
+        var in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        var out = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), BUFFER_SIZE);
+
+        new SyllabifierFilter(new Syllabifier(), text, format, separator).run(in, out);
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: SyllabifierFilter [--text] [--format=plain|arrow|tsv] "
+                + "[--separator=SEP | --soft-hyphen]");
+        System.exit(2);
+    }
+}
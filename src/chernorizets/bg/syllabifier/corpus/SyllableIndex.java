@@ -0,0 +1,504 @@
+package chernorizets.bg.syllabifier.corpus;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An inverted index from syllables to the words of a {@link ColumnarCorpus}
+ * they're in, for rhyme and meter queries: "words ending in -ди-на", "words
+ * of 3 syllables starting with ма-". It's memory-mapped from a file built by
+ * {@link SyllableIndexWriter}, and answers by intersecting posting lists -
+ * without syllabifying anything.
+ * <p>
+ * A {@link Term} is a syllable at a position counted from the start or from
+ * the end of the word, up to {@link #MAX_POSITION} either way, or a syllable
+ * count. Syllables are compared lowercase, without accents.
+ * <p>
+ * The file holds the terms sorted, and a posting list of word ids per term:
+ * <pre>
+ *   header:            magic "BGSI", version, word count, term count, section offsets (ints)
+ *   key offsets:       one int per term, plus the end - where the term starts in the key chars
+ *   key chars:         the terms, as chars
+ *   postings offsets:  one int per term, plus the end - where its posting list starts in the postings
+ *   document counts:   one int per term - the length of its posting list
+ *   postings:          per term - a skip entry per block of 128 ids (the first id, and the offset
+ *                      of the rest in the block data, as ints), then the block data: the gaps
+ *                      between consecutive ids, as varints. Or for terms in at least 1/16 of
+ *                      the words, a bitset of all the word ids (longs) - up to twice the size
+ *                      of the gaps, but a single bit to test
+ * </pre>
+ * The skip entries let an intersection jump over whole blocks of a long
+ * list, and the bitsets answer whether a word has a common term - a
+ * syllable count, a frequent ending - by looking at a single bit. So a
+ * query costs about as much as decoding its shortest list.
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class SyllableIndex {
+
+    static final int MAGIC = 0x42475349; // "BGSI"
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 9 * Integer.BYTES;
+
+    static final int BLOCK_SIZE = 128;
+    static final int SKIP_ENTRY_SIZE = 2 * Integer.BYTES;
+
+    /** The furthest position from either end of a word that's indexed. */
+    public static final int MAX_POSITION = 8;
+
+    private static final int NO_MORE_IDS = Integer.MAX_VALUE;
+
+    private final ByteBuffer buffer;
+    private final int wordCount;
+    private final int termCount;
+    private final int keyOffsetsStart;
+    private final int keyCharsStart;
+    private final int postingsOffsetsStart;
+    private final int docFreqsStart;
+    private final int postingsStart;
+
+    private SyllableIndex(ByteBuffer buffer) {
+        this.buffer = buffer;
+
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a syllable index file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported syllable index version: " + buffer.getInt(4));
+        }
+
+        this.wordCount = buffer.getInt(8);
+        this.termCount = buffer.getInt(12);
+        this.keyOffsetsStart = buffer.getInt(16);
+        this.keyCharsStart = buffer.getInt(20);
+        this.postingsOffsetsStart = buffer.getInt(24);
+        this.docFreqsStart = buffer.getInt(28);
+        this.postingsStart = buffer.getInt(32);
+    }
+
+    public static SyllableIndex open(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new SyllableIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /** The number of words in the indexed corpus. */
+    public int wordCount() {
+        return wordCount;
+    }
+
+    public int termCount() {
+        return termCount;
+    }
+
+    /** The number of words matching a term. */
+    public int count(Term term) {
+        int t = findTerm(term.key);
+        return t < 0 ? 0 : docFreq(t);
+    }
+
+    /**
+     * The ids of the words matching all the terms, in increasing order.
+     */
+    public int[] find(List<Term> terms) {
+        if (terms.isEmpty()) throw new IllegalArgumentException("No terms to match");
+
+        var cursors = new Cursor[terms.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            int t = findTerm(terms.get(i).key);
+            if (t < 0) return new int[0];
+
+            int docFreq = docFreq(t);
+            cursors[i] = isDense(docFreq, wordCount) ? new BitSetCursor(t, docFreq) : new BlockCursor(t, docFreq);
+        }
+
+        // Drive the intersection from the shortest list.
+        Arrays.sort(cursors, Comparator.comparingInt(c -> c.docFreq));
+
+        var ids = new int[Math.min(cursors[0].docFreq, 1024)];
+        int nIds = 0;
+
+        var lead = cursors[0];
+        int id = lead.next();
+        candidates:
+        while (id != NO_MORE_IDS) {
+            for (int i = 1; i < cursors.length; i++) {
+                int other = cursors[i].advance(id);
+                if (other != id) {
+                    id = lead.advance(other);
+                    continue candidates;
+                }
+            }
+
+            if (nIds == ids.length) ids = Arrays.copyOf(ids, 2 * nIds);
+            ids[nIds++] = id;
+            id = lead.next();
+        }
+
+        return Arrays.copyOf(ids, nIds);
+    }
+
+    public int[] find(Term ... terms) {
+        return find(List.of(terms));
+    }
+
+    // Binary search in the sorted keys
+    private int findTerm(String key) {
+        int lo = 0, hi = termCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareKey(mid, key);
+
+            if (cmp < 0) lo = mid + 1;
+            else if (cmp > 0) hi = mid - 1;
+            else return mid;
+        }
+
+        return -1;
+    }
+
+    // Same order as String.compareTo, which the writer sorts by
+    private int compareKey(int t, String key) {
+        int start = buffer.getInt(keyOffsetsStart + t * Integer.BYTES);
+        int end = buffer.getInt(keyOffsetsStart + (t + 1) * Integer.BYTES);
+
+        int len = Math.min(end - start, key.length());
+        for (int i = 0; i < len; i++) {
+            char ch = buffer.getChar(keyCharsStart + (start + i) * Character.BYTES);
+            if (ch != key.charAt(i)) return ch - key.charAt(i);
+        }
+
+        return (end - start) - key.length();
+    }
+
+    private int docFreq(int t) {
+        return buffer.getInt(docFreqsStart + t * Integer.BYTES);
+    }
+
+    /*
+     * Iterates over a posting list. Not thread-safe - each query has its own.
+     */
+    private abstract static class Cursor {
+        final int docFreq;
+        int current = -1;
+
+        Cursor(int docFreq) {
+            this.docFreq = docFreq;
+        }
+
+        abstract int next();
+
+        /* Moves to the first id that's at least the target. */
+        abstract int advance(int target);
+    }
+
+    /*
+     * Decodes a block of ids at a time, and skips blocks that end before
+     * the target of an advance without decoding them.
+     */
+    private final class BlockCursor extends Cursor {
+        final int nBlocks;
+        final int skipsStart;
+        final int dataStart;
+
+        final int[] ids = new int[BLOCK_SIZE];
+        int block = -1;
+        int blockLength;
+        int indexInBlock;
+
+        BlockCursor(int t, int docFreq) {
+            super(docFreq);
+            this.nBlocks = (docFreq + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            this.skipsStart = postingsStart + buffer.getInt(postingsOffsetsStart + t * Integer.BYTES);
+            this.dataStart = skipsStart + nBlocks * SKIP_ENTRY_SIZE;
+        }
+
+        @Override
+        int next() {
+            if (++indexInBlock < blockLength) return current = ids[indexInBlock];
+
+            return enterBlock(block + 1);
+        }
+
+        @Override
+        int advance(int target) {
+            if (current >= target) return current;
+
+            if (indexInBlock >= blockLength - 1 || ids[blockLength - 1] < target) {
+                // Gallop to the last block starting at or before the target.
+                int lo = block + 1, step = 1;
+                while (lo + step < nBlocks && firstId(lo + step) <= target) {
+                    lo += step;
+                    step <<= 1;
+                }
+
+                int hi = Math.min(lo + step, nBlocks) - 1;
+                while (lo < hi) {
+                    int mid = (lo + hi + 1) >>> 1;
+                    if (firstId(mid) <= target) lo = mid;
+                    else hi = mid - 1;
+                }
+
+                if (enterBlock(lo) >= target) return current;
+            }
+
+            while (current < target) next();
+            return current;
+        }
+
+        private int enterBlock(int b) {
+            if (b >= nBlocks) {
+                block = nBlocks;
+                blockLength = 0;
+                return current = NO_MORE_IDS;
+            }
+
+            block = b;
+            indexInBlock = 0;
+            blockLength = Math.min(BLOCK_SIZE, docFreq - b * BLOCK_SIZE);
+
+            int pos = dataStart + buffer.getInt(skipsStart + b * SKIP_ENTRY_SIZE + Integer.BYTES);
+            int id = firstId(b);
+            ids[0] = id;
+
+            for (int i = 1; i < blockLength; i++) {
+                int gap = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte v = buffer.get(pos++);
+                    gap |= (v & 0x7F) << shift;
+                    if (v >= 0) break;
+                }
+
+                id += gap;
+                ids[i] = id;
+            }
+
+            return current = ids[0];
+        }
+
+        private int firstId(int b) {
+            return buffer.getInt(skipsStart + b * SKIP_ENTRY_SIZE);
+        }
+    }
+
+    /*
+     * Scans a bitset a word at a time.
+     */
+    private final class BitSetCursor extends Cursor {
+        final int bitsStart;
+        final int nWords;
+
+        // The bits of word w above the current id
+        int w = -1;
+        long word;
+
+        BitSetCursor(int t, int docFreq) {
+            super(docFreq);
+            this.bitsStart = postingsStart + buffer.getInt(postingsOffsetsStart + t * Integer.BYTES);
+            this.nWords = (wordCount + Long.SIZE - 1) / Long.SIZE;
+        }
+
+        @Override
+        int next() {
+            return current == NO_MORE_IDS ? current : scan();
+        }
+
+        @Override
+        int advance(int target) {
+            if (current >= target) return current;
+            if (target >= wordCount) return current = NO_MORE_IDS;
+
+            if (target >>> 6 != w) {
+                w = target >>> 6;
+                word = buffer.getLong(bitsStart + w * Long.BYTES);
+            }
+            word &= -1L << target;
+
+            return scan();
+        }
+
+        private int scan() {
+            while (word == 0) {
+                if (++w >= nWords) return current = NO_MORE_IDS;
+                word = buffer.getLong(bitsStart + w * Long.BYTES);
+            }
+
+            current = (w << 6) + Long.numberOfTrailingZeros(word);
+            word &= word - 1;
+            return current;
+        }
+    }
+
+    /*
+     * Whether a posting list is stored as a bitset over all the words,
+     * rather than as blocks of gaps. At 1/16 of the words, the bitset is
+     * about twice the size of the one-byte gaps, but common terms are
+     * intersected much faster - a bit test per candidate, instead of
+     * decoding the list. Shared by the writer and the reader.
+     */
+    static boolean isDense(int docFreq, int wordCount) {
+        return docFreq >= wordCount / 16;
+    }
+
+    /*
+     * Syllables are indexed lowercase, without combining marks such as
+     * stress accents, so "ДИ́" matches "ди". Shared by the writer and queries.
+     */
+    static String normalizeSyllable(CharSequence text, int start, int end) {
+        var sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char ch = text.charAt(i);
+            if (ch >= '\u0300' && ch <= '\u036F') continue;
+
+            sb.append(Character.toLowerCase(ch));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Something a word can be looked up by.
+     */
+    public static final class Term {
+        // Sorted by in the index: "+2:ди", "-1:на", "#3"
+        final String key;
+
+        private Term(String key) {
+            this.key = key;
+        }
+
+        /** A syllable at a position counted from the start, where the first syllable is 1. */
+        public static Term atStart(int position, String syllable) {
+            return new Term("+" + checkPosition(position) + ":" + normalizeSyllable(syllable, 0, syllable.length()));
+        }
+
+        /** A syllable at a position counted from the end, where the last syllable is 1. */
+        public static Term atEnd(int position, String syllable) {
+            return new Term("-" + checkPosition(position) + ":" + normalizeSyllable(syllable, 0, syllable.length()));
+        }
+
+        public static Term syllableCount(int count) {
+            return new Term("#" + count);
+        }
+
+        /** Terms for words ending in the given syllables, e.g. "ди", "на". */
+        public static List<Term> endsWith(String ... syllables) {
+            var terms = new ArrayList<Term>(syllables.length);
+            for (int i = 0; i < syllables.length; i++) terms.add(atEnd(syllables.length - i, syllables[i]));
+            return terms;
+        }
+
+        /** Terms for words starting with the given syllables, e.g. "ма", "ли". */
+        public static List<Term> startsWith(String ... syllables) {
+            var terms = new ArrayList<Term>(syllables.length);
+            for (int i = 0; i < syllables.length; i++) terms.add(atStart(i + 1, syllables[i]));
+            return terms;
+        }
+
+        /**
+         * Parses a query term, as written on the command line:
+         * <ul>
+         *     <li>{@code -ди-на} - words ending in these syllables</li>
+         *     <li>{@code ма-ли-} - words starting with these syllables</li>
+         *     <li>{@code 2:ли}, {@code -2:ди} - a syllable at a position from the start, or the end</li>
+         *     <li>{@code #3} - words of this many syllables</li>
+         * </ul>
+         */
+        public static List<Term> parse(String query) {
+            try {
+                if (query.startsWith("#")) {
+                    return List.of(syllableCount(Integer.parseInt(query.substring(1))));
+                }
+
+                int colon = query.indexOf(':');
+                if (colon >= 0) {
+                    int position = Integer.parseInt(query.substring(0, colon));
+                    var syllable = query.substring(colon + 1);
+
+                    return List.of(position < 0 ? atEnd(-position, syllable) : atStart(position, syllable));
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad query term: " + query);
+            }
+
+            if (query.length() > 1 && query.startsWith("-")) return endsWith(query.substring(1).split("-"));
+            if (query.length() > 1 && query.endsWith("-")) {
+                return startsWith(query.substring(0, query.length() - 1).split("-"));
+            }
+
+            throw new IllegalArgumentException("Bad query term: " + query);
+        }
+
+        private static int checkPosition(int position) {
+            if (position < 1 || position > MAX_POSITION) {
+                throw new IllegalArgumentException("Position " + position + " out of range [1, " + MAX_POSITION + "]");
+            }
+            return position;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Term && ((Term) o).key.equals(key);
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+
+    /*
+     * Usage: SyllableIndex INDEX CORPUS QUERY_TERM...
+     *
+     * Prints the matching words as "word --> syl-la-bles (frequency)" lines,
+     * and the query time on standard error.
+     */
+    public static void main(String ... args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: SyllableIndex INDEX CORPUS QUERY_TERM...");
+            System.err.println("  e.g. -ди-на   ма-ли-   2:ли   -3:ка   #3");
+            System.exit(2);
+        }
+
+        var index = open(Path.of(args[0]));
+        var corpus = ColumnarCorpus.open(Path.of(args[1]));
+
+        var terms = new ArrayList<Term>();
+        try {
+            for (int i = 2; i < args.length; i++) terms.addAll(Term.parse(args[i]));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+
+        long t0 = System.nanoTime();
+        int[] ids = index.find(terms);
+        long elapsed = System.nanoTime() - t0;
+
+        var out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        for (int id : ids) {
+            out.printf("%s --> %s (%d)%n", corpus.word(id), String.join("-", corpus.syllables(id)),
+                    corpus.frequency(id));
+        }
+        out.flush();
+
+        System.err.printf(Locale.ROOT, "%,d words matching %s in %.3f ms%n", ids.length, terms, elapsed / 1e6);
+    }
+}
@@ -0,0 +1,190 @@
+package chernorizets.bg.syllabifier.corpus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Builds a {@link SyllableIndex} over the words of a {@link ColumnarCorpus}.
+ * The posting lists are built in memory - about 30 MB for a million words -
+ * and written out in one go.
+ * <p>
+ * Usage: SyllableIndexWriter CORPUS INDEX
+ */
+public final class SyllableIndexWriter {
+
+    private SyllableIndexWriter() {
+    }
+
+    // Word ids, in increasing order
+    private static final class IdList {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, 2 * size);
+            ids[size++] = id;
+        }
+    }
+
+    /**
+     * @return the number of distinct terms
+     */
+    public static int build(ColumnarCorpus corpus, Path output) throws IOException {
+        var postings = new HashMap<String, IdList>();
+        var breakOffsets = new int[ColumnarCorpus.MAX_WORD_LENGTH];
+
+        for (int id = 0; id < corpus.size(); id++) {
+            var word = corpus.word(id);
+            int nSyllables = corpus.breakOffsets(id, breakOffsets);
+
+            postings.computeIfAbsent(SyllableIndex.Term.syllableCount(nSyllables).key, k -> new IdList()).add(id);
+
+            int prev = 0;
+            for (int k = 0; k < nSyllables; k++) {
+                int next = k < nSyllables - 1 ? breakOffsets[k] : word.length();
+                var syllable = SyllableIndex.normalizeSyllable(word, prev, next);
+                prev = next;
+
+                if (k < SyllableIndex.MAX_POSITION) {
+                    postings.computeIfAbsent(SyllableIndex.Term.atStart(k + 1, syllable).key, t -> new IdList()).add(id);
+                }
+                if (nSyllables - k <= SyllableIndex.MAX_POSITION) {
+                    postings.computeIfAbsent(SyllableIndex.Term.atEnd(nSyllables - k, syllable).key, t -> new IdList())
+                            .add(id);
+                }
+            }
+        }
+
+        var keys = new ArrayList<>(postings.keySet());
+        keys.sort(null);
+
+        write(corpus.size(), keys, postings, output);
+        return keys.size();
+    }
+
+    private static void write(int wordCount, ArrayList<String> keys, HashMap<String, IdList> postings, Path output)
+            throws IOException {
+        int n = keys.size();
+
+        var keyOffsets = new int[n + 1];
+        var postingsOffsets = new int[n + 1];
+        var docFreqs = new int[n];
+
+        var encoded = new ByteArrayOutputStream(1 << 20);
+        for (int t = 0; t < n; t++) {
+            var ids = postings.get(keys.get(t));
+
+            keyOffsets[t + 1] = keyOffsets[t] + keys.get(t).length();
+            docFreqs[t] = ids.size;
+            postingsOffsets[t] = encoded.size();
+            if (SyllableIndex.isDense(ids.size, wordCount)) {
+                encodeBitSet(ids, wordCount, encoded);
+            } else {
+                encode(ids, encoded);
+            }
+        }
+        postingsOffsets[n] = encoded.size();
+
+        int keyOffsetsStart = SyllableIndex.HEADER_SIZE;
+        int keyCharsStart = keyOffsetsStart + (n + 1) * Integer.BYTES;
+        int postingsOffsetsStart = align(keyCharsStart + keyOffsets[n] * Character.BYTES);
+        int docFreqsStart = postingsOffsetsStart + (n + 1) * Integer.BYTES;
+        int postingsStart = docFreqsStart + n * Integer.BYTES;
+        long size = (long) postingsStart + encoded.size();
+
+        if (size > Integer.MAX_VALUE) throw new IOException("Index too large: " + size + " bytes");
+
+        var buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(SyllableIndex.MAGIC)
+                .putInt(SyllableIndex.VERSION)
+                .putInt(wordCount)
+                .putInt(n)
+                .putInt(keyOffsetsStart)
+                .putInt(keyCharsStart)
+                .putInt(postingsOffsetsStart)
+                .putInt(docFreqsStart)
+                .putInt(postingsStart);
+
+        buffer.position(keyOffsetsStart);
+        for (int offset : keyOffsets) buffer.putInt(offset);
+        for (var key : keys) {
+            for (int i = 0; i < key.length(); i++) buffer.putChar(key.charAt(i));
+        }
+
+        buffer.position(postingsOffsetsStart);
+        for (int offset : postingsOffsets) buffer.putInt(offset);
+        for (int docFreq : docFreqs) buffer.putInt(docFreq);
+        buffer.put(encoded.toByteArray());
+
+        buffer.flip();
+        try (var out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) out.write(buffer);
+        }
+    }
+
+    /*
+     * A skip entry per block of ids - its first id, and where the rest
+     * start in the block data - followed by the block data: the gaps
+     * between consecutive ids, as varints.
+     */
+    private static void encode(IdList ids, ByteArrayOutputStream out) {
+        int nBlocks = (ids.size + SyllableIndex.BLOCK_SIZE - 1) / SyllableIndex.BLOCK_SIZE;
+
+        var data = new ByteArrayOutputStream();
+        var skips = ByteBuffer.allocate(nBlocks * SyllableIndex.SKIP_ENTRY_SIZE);
+
+        for (int i = 0; i < ids.size; i++) {
+            if (i % SyllableIndex.BLOCK_SIZE == 0) {
+                skips.putInt(ids.ids[i]).putInt(data.size());
+            } else {
+                writeVarint(ids.ids[i] - ids.ids[i - 1], data);
+            }
+        }
+
+        out.write(skips.array(), 0, skips.capacity());
+        out.write(data.toByteArray(), 0, data.size());
+    }
+
+    private static void encodeBitSet(IdList ids, int wordCount, ByteArrayOutputStream out) {
+        var bits = new long[(wordCount + Long.SIZE - 1) / Long.SIZE];
+        for (int i = 0; i < ids.size; i++) bits[ids.ids[i] >>> 6] |= 1L << ids.ids[i];
+
+        var bytes = ByteBuffer.allocate(bits.length * Long.BYTES);
+        for (long word : bits) bytes.putLong(word);
+        out.write(bytes.array(), 0, bytes.capacity());
+    }
+
+    private static void writeVarint(int value, ByteArrayOutputStream out) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int align(int pos) {
+        return (pos + Integer.BYTES - 1) & -Integer.BYTES;
+    }
+
+    public static void main(String ... args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: SyllableIndexWriter CORPUS INDEX");
+            System.exit(2);
+        }
+
+        long t0 = System.nanoTime();
+        var corpus = ColumnarCorpus.open(Path.of(args[0]));
+        int nTerms = build(corpus, Path.of(args[1]));
+
+        System.err.printf("Indexed %,d words, %,d terms in %.2f s%n",
+                corpus.size(), nTerms, (System.nanoTime() - t0) / 1e9);
+    }
+}
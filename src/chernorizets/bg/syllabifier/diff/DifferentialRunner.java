@@ -0,0 +1,228 @@
+package chernorizets.bg.syllabifier.diff;
+
+import chernorizets.bg.syllabifier.Syllabifier;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Streams a word list through two versions of the syllabifier - e.g. before
+ * and after a change to clusters.txt, the prefixes or the sonority model -
+ * and reports every word whose syllabification changed, grouped by the rules
+ * that decided the first differing break on either side.
+ * <p>
+ * Words are read in chunks, and each chunk is syllabified by both sides in
+ * parallel, so memory use is bounded by the number of changes, not the size
+ * of the word list. See {@link SyllabifierBuild} for how sides are specified.
+ * <p>
+ * Usage: DifferentialRunner [--a=SIDE] [--b=SIDE] WORD_LIST [REPORT]
+ * <p>
+ * Both sides default to the current build. The word list has one word per
+ * line; anything after the first whitespace is ignored. The report goes to
+ * standard output, unless a file is given.
+ */
+public class DifferentialRunner {
+
+    // Words read and compared at a time
+    static final int CHUNK_SIZE = 1 << 16;
+
+    // Words per parallel task
+    static final int SLICE_SIZE = 1024;
+
+    // Longer words don't fit a break mask, and are skipped
+    static final int MAX_WORD_LENGTH = Long.SIZE;
+
+    // Groups changes whose first differing break the sides don't attribute
+    static final String UNATTRIBUTED = "UNATTRIBUTED";
+
+    private final SyllabifierBuild a;
+    private final SyllabifierBuild b;
+
+    // Change group -> changed word -> change, in order of first occurrence
+    private final Map<String, Map<String, Change>> changes = new TreeMap<>();
+
+    private long nWords;
+    private long nChanged;
+
+    DifferentialRunner(SyllabifierBuild a, SyllabifierBuild b) {
+        this.a = a;
+        this.b = b;
+    }
+
+    private static final class Change {
+        final long maskA, maskB;
+        int occurrences = 1;
+
+        Change(long maskA, long maskB) {
+            this.maskA = maskA;
+            this.maskB = maskB;
+        }
+    }
+
+    void run(BufferedReader wordList) throws IOException {
+        var chunk = new ArrayList<String>(CHUNK_SIZE);
+
+        for (String line; (line = wordList.readLine()) != null; ) {
+            var word = wordOf(line);
+            if (word == null) continue;
+
+            chunk.add(word);
+            if (chunk.size() == CHUNK_SIZE) {
+                compare(chunk);
+                chunk.clear();
+            }
+        }
+
+        compare(chunk);
+    }
+
+    private static String wordOf(String line) {
+        var content = line.strip();
+        if (content.isEmpty() || content.startsWith("#")) return null;
+
+        int space = 0;
+        while (space < content.length() && !Character.isWhitespace(content.charAt(space))) space++;
+
+        // Forced break markers are skipped, as older builds strip them from
+        // the syllables they return.
+        var word = Syllabifier.normalizeWord(content.substring(0, space));
+        return word.length() <= MAX_WORD_LENGTH && word.indexOf('.') == -1 ? word : null;
+    }
+
+    private void compare(List<String> chunk) {
+        var masksA = new long[chunk.size()];
+        var masksB = new long[chunk.size()];
+
+        // Both sides are thread-safe, and each slice of the chunk is
+        // written by one thread.
+        int nSlices = (chunk.size() + SLICE_SIZE - 1) / SLICE_SIZE;
+        IntStream.range(0, nSlices).parallel().forEach(slice -> {
+            var breakOffsets = new int[MAX_WORD_LENGTH];
+
+            for (int i = slice * SLICE_SIZE; i < Math.min(chunk.size(), (slice + 1) * SLICE_SIZE); i++) {
+                masksA[i] = a.breakMask(chunk.get(i), breakOffsets);
+                masksB[i] = b.breakMask(chunk.get(i), breakOffsets);
+            }
+        });
+
+        nWords += chunk.size();
+
+        // Changes are rare - attributing them is done sequentially.
+        for (int i = 0; i < chunk.size(); i++) {
+            if (masksA[i] == masksB[i]) continue;
+
+            nChanged++;
+            var word = chunk.get(i);
+
+            var group = changes.computeIfAbsent(attribute(word), g -> new LinkedHashMap<>());
+            var change = group.get(word);
+
+            if (change == null) group.put(word, new Change(masksA[i], masksB[i]));
+            else change.occurrences++;
+        }
+    }
+
+    /*
+     * "RULE_A -> RULE_B" for the first pair of vowels whose break moved.
+     */
+    private String attribute(String word) {
+        var decisionsA = a.explain(word);
+        var decisionsB = b.explain(word);
+
+        for (int i = 0; i < Math.min(decisionsA.size(), decisionsB.size()); i++) {
+            var decisionA = decisionsA.get(i);
+            var decisionB = decisionsB.get(i);
+
+            if (!decisionA[0].equals(decisionB[0])) return decisionA[1] + " -> " + decisionB[1];
+        }
+
+        return UNATTRIBUTED;
+    }
+
+    void report(PrintWriter out) {
+        var groups = new ArrayList<>(changes.entrySet());
+        groups.sort(Comparator.comparingInt((Map.Entry<String, Map<String, Change>> g) -> g.getValue().size())
+                .reversed());
+
+        out.printf("# A: %s%n# B: %s%n", a.spec(), b.spec());
+        out.printf("# %,d words compared, %,d changed (%,d distinct)%n",
+                nWords, nChanged, changes.values().stream().mapToInt(Map::size).sum());
+
+        for (var group : groups) {
+            out.printf("%n## %s (%,d words)%n", group.getKey(), group.getValue().size());
+
+            for (var entry : group.getValue().entrySet()) {
+                var change = entry.getValue();
+                out.printf("%s\t%s -> %s%s%n", entry.getKey(),
+                        hyphenate(entry.getKey(), change.maskA), hyphenate(entry.getKey(), change.maskB),
+                        change.occurrences > 1 ? "\t(x" + change.occurrences + ")" : "");
+            }
+        }
+
+        out.flush();
+    }
+
+    private static String hyphenate(String word, long mask) {
+        var result = new StringBuilder(word.length() + Long.bitCount(mask));
+
+        for (int i = 0; i < word.length(); i++) {
+            if (i > 0 && ((mask >>> i) & 1) != 0) result.append('-');
+            result.append(word.charAt(i));
+        }
+
+        return result.toString();
+    }
+
+    public static void main(String ... args) throws Exception {
+        var specA = "current";
+        var specB = "current";
+        var paths = new ArrayList<Path>();
+
+        for (var arg : args) {
+            if (arg.startsWith("--a=")) specA = arg.substring("--a=".length());
+            else if (arg.startsWith("--b=")) specB = arg.substring("--b=".length());
+            else paths.add(Path.of(arg));
+        }
+
+        if (paths.isEmpty() || paths.size() > 2) {
+            System.err.println("Usage: DifferentialRunner [--a=SIDE] [--b=SIDE] WORD_LIST [REPORT]");
+            System.err.println("SIDE is 'current', a classes directory or jar, or a directory of rules files");
+            System.exit(2);
+        }
+
+        var a = SyllabifierBuild.load(specA);
+        var b = SyllabifierBuild.load(specB);
+        if (!a.canExplain() || !b.canExplain()) {
+            System.err.println("Note: at least one side can't explain its breaks; changes are reported unattributed");
+        }
+
+        var runner = new DifferentialRunner(a, b);
+
+        long t0 = System.nanoTime();
+        try (var reader = Files.newBufferedReader(paths.get(0), StandardCharsets.UTF_8)) {
+            runner.run(reader);
+        }
+        double seconds = (System.nanoTime() - t0) / 1e9;
+
+        try (var out = paths.size() == 2
+                ? new PrintWriter(Files.newBufferedWriter(paths.get(1), StandardCharsets.UTF_8))
+                : new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))) {
+            runner.report(out);
+        }
+
+        System.err.printf("Compared %,d words in %.2f s (%,.0f words/s), %,d changed%n",
+                runner.nWords, seconds, runner.nWords / seconds, runner.nChanged);
+    }
+}
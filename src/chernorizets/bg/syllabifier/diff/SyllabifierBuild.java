@@ -0,0 +1,207 @@
+package chernorizets.bg.syllabifier.diff;
+
+import chernorizets.bg.syllabifier.Syllabifier;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One side of a differential run: a {@link Syllabifier} loaded in a class
+ * loader of its own, so that two versions of it - with different code, or
+ * just different rules files - can run side by side in one JVM.
+ * <p>
+ * A side is specified as one of:
+ * <ul>
+ *     <li>{@code current} - the build this class is part of</li>
+ *     <li>a build - a classes directory or jar with the syllabifier in it,
+ *     e.g. {@code target/classes} of another checkout</li>
+ *     <li>a rules directory - any of clusters.txt, prefixes.txt,
+ *     suffixes.txt and sonority.txt, loaded into the current build with
+ *     {@code RuleSet.load}, the bundled rules filling in the rest</li>
+ * </ul>
+ * Builds that predate {@code syllabifyInto} or {@code explain} are supported,
+ * more slowly and without rule attribution, respectively.
+ */
+final class SyllabifierBuild {
+
+    private static final String PACKAGE_PATH = "chernorizets/bg/syllabifier/";
+    private static final String SYLLABIFIER_CLASS = "chernorizets.bg.syllabifier.Syllabifier";
+    private static final String RULE_SET_CLASS = "chernorizets.bg.syllabifier.RuleSet";
+
+    private final String spec;
+
+    private final Object syllabifier;
+
+    // int syllabifyInto(CharSequence, int, int, int[]), bound to the instance, or null
+    private final MethodHandle syllabifyInto;
+
+    // List<String> syllabify(String), bound to the instance
+    private final MethodHandle syllabify;
+
+    // List<BreakDecision> explain(String), or null
+    private final Method explain;
+
+    private SyllabifierBuild(String spec, ClassLoader loader, Object rules) throws ReflectiveOperationException {
+        this.spec = spec;
+
+        var cls = Class.forName(SYLLABIFIER_CLASS, true, loader);
+        this.syllabifier = rules == null
+                ? cls.getConstructor().newInstance()
+                : cls.getConstructor(rules.getClass()).newInstance(rules);
+
+        var lookup = MethodHandles.publicLookup();
+        this.syllabify = lookup.findVirtual(cls, "syllabify", MethodType.methodType(List.class, String.class))
+                .bindTo(syllabifier);
+
+        MethodHandle into = null;
+        try {
+            into = lookup.findVirtual(cls, "syllabifyInto",
+                    MethodType.methodType(int.class, CharSequence.class, int.class, int.class, int[].class))
+                    .bindTo(syllabifier);
+        } catch (NoSuchMethodException e) {
+            // An older build - fall back to syllabify()
+        }
+        this.syllabifyInto = into;
+
+        Method explainMethod = null;
+        try {
+            explainMethod = cls.getMethod("explain", String.class);
+        } catch (NoSuchMethodException e) {
+            // An older build - no rule attribution
+        }
+        this.explain = explainMethod;
+    }
+
+    static SyllabifierBuild load(String spec) throws IOException, ReflectiveOperationException {
+        var currentBuild = currentBuildLocation();
+
+        if (spec.equals("current")) {
+            return new SyllabifierBuild(spec, new IsolatingClassLoader(new URL[] {currentBuild}), null);
+        }
+
+        var path = Path.of(spec);
+        if (!Files.exists(path)) throw new IOException("No such build or rules directory: " + spec);
+
+        boolean isBuild = Files.isRegularFile(path)
+                || Files.exists(path.resolve(PACKAGE_PATH + "Syllabifier.class"));
+
+        if (isBuild) {
+            return new SyllabifierBuild(spec, new IsolatingClassLoader(new URL[] {toURL(path)}), null);
+        }
+
+        // The whole rule set, sonority ranks included, is loaded and
+        // checked the same way a RuleReloader would.
+        var loader = new IsolatingClassLoader(new URL[] {currentBuild});
+        return new SyllabifierBuild(spec, loader, loadRules(loader, path));
+    }
+
+    private static Object loadRules(ClassLoader loader, Path dir) throws IOException, ReflectiveOperationException {
+        var load = Class.forName(RULE_SET_CLASS, true, loader).getMethod("load", Path.class);
+
+        try {
+            return load.invoke(null, dir);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private static URL currentBuildLocation() throws IOException {
+        try {
+            return Syllabifier.class.getProtectionDomain().getCodeSource().getLocation().toURI().toURL();
+        } catch (URISyntaxException | NullPointerException e) {
+            throw new IOException("Can't locate the current build", e);
+        }
+    }
+
+    private static URL toURL(Path path) throws MalformedURLException {
+        return path.toAbsolutePath().toUri().toURL();
+    }
+
+    String spec() {
+        return spec;
+    }
+
+    boolean canExplain() {
+        return explain != null;
+    }
+
+    /**
+     * The break mask of a trimmed, lowercase word of up to 64 letters:
+     * bit <i>k</i> is set if a syllable starts at index <i>k</i>.
+     */
+    long breakMask(String word, int[] breakOffsets) {
+        try {
+            long mask = 1L;
+
+            if (syllabifyInto != null) {
+                int nSyllables = (int) syllabifyInto.invokeExact((CharSequence) word, 0, word.length(), breakOffsets);
+                for (int i = 0; i < nSyllables - 1; i++) mask |= 1L << breakOffsets[i];
+
+                return mask;
+            }
+
+            @SuppressWarnings("unchecked")
+            var syllables = (List<String>) (List<?>) syllabify.invokeExact(word);
+
+            int onset = 0;
+            for (int i = 0; i < syllables.size() - 1; i++) {
+                onset += syllables.get(i).length();
+                mask |= 1L << onset;
+            }
+
+            return mask;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * For each pair of consecutive vowels, the onset of the next syllable,
+     * and the name of the rule that decided it. Empty if this build can't
+     * explain itself.
+     */
+    List<Object[]> explain(String word) {
+        var decisions = new ArrayList<Object[]>();
+        if (explain == null) return decisions;
+
+        try {
+            for (var decision : (List<?>) explain.invoke(syllabifier, word)) {
+                var cls = decision.getClass();
+                decisions.add(new Object[] {
+                        cls.getMethod("onset").invoke(decision),
+                        cls.getMethod("rule").invoke(decision).toString()
+                });
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return decisions;
+    }
+
+    /*
+     * Loads classes from its own URLs only, bypassing the application class
+     * loader, so that each side gets its own copy of the syllabifier.
+     */
+    private static final class IsolatingClassLoader extends URLClassLoader {
+        IsolatingClassLoader(URL[] urls) {
+            super(urls, ClassLoader.getPlatformClassLoader());
+        }
+    }
+}
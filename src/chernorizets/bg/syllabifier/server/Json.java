@@ -0,0 +1,119 @@
+package chernorizets.bg.syllabifier.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Just enough JSON for the batch endpoint: parsing an array of strings,
+ * and writing strings out.
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    static List<String> parseStringArray(CharSequence json) {
+        var strings = new ArrayList<String>();
+
+        int pos = skipWhitespace(json, 0);
+        pos = expect(json, pos, '[');
+        pos = skipWhitespace(json, pos);
+
+        if (pos < json.length() && json.charAt(pos) == ']') {
+            pos++;
+        } else {
+            while (true) {
+                var string = new StringBuilder();
+                pos = parseString(json, skipWhitespace(json, pos), string);
+                strings.add(string.toString());
+
+                pos = skipWhitespace(json, pos);
+                if (pos < json.length() && json.charAt(pos) == ',') {
+                    pos++;
+                    continue;
+                }
+
+                pos = expect(json, pos, ']');
+                break;
+            }
+        }
+
+        if (skipWhitespace(json, pos) != json.length()) throw new IllegalArgumentException("Trailing data after array");
+
+        return strings;
+    }
+
+    static void appendString(StringBuilder out, String string) {
+        out.append('"');
+
+        for (int i = 0; i < string.length(); i++) {
+            char ch = string.charAt(i);
+
+            switch (ch) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (ch < ' ') out.append(String.format("\\u%04x", (int) ch));
+                    else out.append(ch);
+            }
+        }
+
+        out.append('"');
+    }
+
+    private static int parseString(CharSequence json, int pos, StringBuilder out) {
+        pos = expect(json, pos, '"');
+
+        while (pos < json.length()) {
+            char ch = json.charAt(pos++);
+
+            if (ch == '"') return pos;
+            if (ch != '\\') {
+                out.append(ch);
+                continue;
+            }
+
+            if (pos >= json.length()) break;
+
+            char escaped = json.charAt(pos++);
+            switch (escaped) {
+                case '"': case '\\': case '/': out.append(escaped); break;
+                case 'b': out.append('\b'); break;
+                case 'f': out.append('\f'); break;
+                case 'n': out.append('\n'); break;
+                case 'r': out.append('\r'); break;
+                case 't': out.append('\t'); break;
+                case 'u':
+                    if (pos + 4 > json.length()) throw new IllegalArgumentException("Truncated \\u escape");
+                    try {
+                        out.append((char) Integer.parseInt(json.subSequence(pos, pos + 4).toString(), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid \\u escape at " + pos);
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid escape at " + (pos - 1));
+            }
+        }
+
+        throw new IllegalArgumentException("Unterminated string");
+    }
+
+    private static int expect(CharSequence json, int pos, char expected) {
+        if (pos >= json.length() || json.charAt(pos) != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' at " + pos);
+        }
+
+        return pos + 1;
+    }
+
+    private static int skipWhitespace(CharSequence json, int pos) {
+        while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) pos++;
+
+        return pos;
+    }
+}
@@ -0,0 +1,398 @@
+package chernorizets.bg.syllabifier.server;
+
+import chernorizets.bg.syllabifier.CachingSyllabifier;
+import chernorizets.bg.syllabifier.RuleReloader;
+import chernorizets.bg.syllabifier.Syllabifier;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A long-running local syllabification service, on the JDK's built-in
+ * HTTP server. It saves clients such as bots and editor tooling the cost of
+ * starting up and warming up a JVM per run.
+ * <p>
+ * Endpoints:
+ * <ul>
+ *     <li>{@code GET /syllabify?word=WORD[&separator=SEP]} - the syllables of
+ *     one word, joined by the separator ("-" by default), as plain text</li>
+ *     <li>{@code POST /batch[?separator=SEP]} - with a plain text body, one word
+ *     per line in, one syllabified word per line out, in the same order. With a
+ *     JSON body - an array of strings - the response is an array of syllable
+ *     arrays.</li>
+ *     <li>{@code GET /health} - "ok", for liveness checks</li>
+ *     <li>{@code GET /metrics} - request, word and cache counters, and the
+ *     version of the rules in use, in the Prometheus text format</li>
+ * </ul>
+ * Every response has a known length, so connections are kept alive between
+ * requests. Each request runs on its own virtual thread where the JVM has them
+ * (Java 21 and up), and on a fixed pool of platform threads otherwise.
+ * Results are cached, since the words bots send repeat a lot.
+ * <p>
+ * Started with a rules directory, the server reloads its rules whenever the
+ * files there change (see {@link RuleReloader}), without pausing requests.
+ */
+public class SyllabificationServer {
+
+    static final int DEFAULT_PORT = 8080;
+
+    static final int DEFAULT_CACHE_SIZE = 1 << 16;
+
+    // Batch request bodies larger than this are rejected
+    static final int MAX_BODY_SIZE = 16 << 20;
+
+    private static final String TEXT_PLAIN = "text/plain; charset=utf-8";
+    private static final String APPLICATION_JSON = "application/json; charset=utf-8";
+
+    private final HttpServer server;
+
+    private final CachingSyllabifier syllabifier;
+
+    // Null if the rules are the bundled ones
+    private final RuleReloader reloader;
+
+    private final ExecutorService executor;
+
+    private final boolean virtualThreads;
+
+    private final long startNanos = System.nanoTime();
+
+    private final Map<String, LongAdder> requests = new HashMap<>();
+    private final LongAdder words = new LongAdder();
+    private final LongAdder clientErrors = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+
+    public SyllabificationServer(InetSocketAddress address, CachingSyllabifier syllabifier) throws IOException {
+        this(address, syllabifier, null);
+    }
+
+    /**
+     * @param reloader what keeps the syllabifier's rules up to date, for
+     * its metrics - or null if they don't change
+     */
+    public SyllabificationServer(InetSocketAddress address, CachingSyllabifier syllabifier,
+                                 RuleReloader reloader) throws IOException {
+        this.syllabifier = syllabifier;
+        this.reloader = reloader;
+
+        var virtualThreadExecutor = newVirtualThreadExecutor();
+        this.virtualThreads = virtualThreadExecutor != null;
+        this.executor = virtualThreads ? virtualThreadExecutor
+                : Executors.newFixedThreadPool(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+
+        addEndpoint("/syllabify", this::handleSyllabify);
+        addEndpoint("/batch", this::handleBatch);
+        addEndpoint("/health", this::handleHealth);
+        addEndpoint("/metrics", this::handleMetrics);
+    }
+
+    /*
+     * Executors.newVirtualThreadPerTaskExecutor() is only there on Java 21
+     * and up, while we build for Java 11.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting connections, and waits up to {@code delaySeconds}
+     * for requests in flight to finish.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * The port the server listens on - useful when created with port 0.
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    private interface Endpoint {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private static final class ClientError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ClientError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void addEndpoint(String path, Endpoint endpoint) {
+        var counter = new LongAdder();
+        requests.put(path.substring(1), counter);
+
+        HttpHandler handler = exchange -> {
+            counter.increment();
+
+            // I/O errors mean the client went away mid-request; they're left
+            // to the HTTP server, which drops the connection.
+            try {
+                if (!exchange.getRequestURI().getPath().equals(path)) {
+                    throw new ClientError(404, "Not found");
+                }
+
+                endpoint.handle(exchange);
+            } catch (ClientError e) {
+                clientErrors.increment();
+                respond(exchange, e.status, TEXT_PLAIN, e.getMessage() + "\n");
+            } catch (RuntimeException e) {
+                serverErrors.increment();
+                respond(exchange, 500, TEXT_PLAIN, "Internal error\n");
+            } finally {
+                exchange.close();
+            }
+        };
+
+        server.createContext(path, handler);
+    }
+
+    private void handleSyllabify(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "GET");
+        drain(exchange.getRequestBody());
+
+        var params = queryParams(exchange);
+
+        var word = params.get("word");
+        if (word == null) throw new ClientError(400, "Missing 'word' parameter");
+
+        words.increment();
+        respond(exchange, 200, TEXT_PLAIN,
+                String.join(params.getOrDefault("separator", "-"), syllabifier.syllabify(word)) + "\n");
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "POST");
+
+        var body = readBody(exchange);
+        var contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        var response = new StringBuilder(body.length() * 2);
+
+        if (contentType != null && contentType.startsWith("application/json")) {
+            List<String> batch;
+            try {
+                batch = Json.parseStringArray(body);
+            } catch (IllegalArgumentException e) {
+                throw new ClientError(400, "Invalid JSON: " + e.getMessage());
+            }
+
+            response.append('[');
+            for (int i = 0; i < batch.size(); i++) {
+                if (i > 0) response.append(',');
+
+                response.append('[');
+                var syllables = syllabifier.syllabify(batch.get(i));
+                for (int j = 0; j < syllables.size(); j++) {
+                    if (j > 0) response.append(',');
+                    Json.appendString(response, syllables.get(j));
+                }
+                response.append(']');
+            }
+            response.append("]\n");
+
+            words.add(batch.size());
+            respond(exchange, 200, APPLICATION_JSON, response.toString());
+            return;
+        }
+
+        var separator = queryParams(exchange).getOrDefault("separator", "-");
+        int nWords = 0;
+
+        // Blank lines come out blank, so that output lines match input lines.
+        for (var line : body.split("\r?\n", -1)) {
+            if (nWords > 0) response.append('\n');
+            response.append(String.join(separator, syllabifier.syllabify(line)));
+            nWords++;
+        }
+        if (body.endsWith("\n")) nWords--;
+        else response.append('\n');
+
+        words.add(nWords);
+        respond(exchange, 200, TEXT_PLAIN, response.toString());
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        drain(exchange.getRequestBody());
+        respond(exchange, 200, TEXT_PLAIN, "ok\n");
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        drain(exchange.getRequestBody());
+
+        var metrics = new StringBuilder();
+        requests.forEach((endpoint, count) -> metrics.append(
+                String.format("syllabifier_requests_total{endpoint=\"%s\"} %d%n", endpoint, count.sum())));
+
+        metrics.append(String.format("syllabifier_words_total %d%n", words.sum()));
+        metrics.append(String.format("syllabifier_errors_total{kind=\"client\"} %d%n", clientErrors.sum()));
+        metrics.append(String.format("syllabifier_errors_total{kind=\"server\"} %d%n", serverErrors.sum()));
+        metrics.append(String.format("syllabifier_cache_hits_total %d%n", syllabifier.hits()));
+        metrics.append(String.format("syllabifier_cache_misses_total %d%n", syllabifier.misses()));
+        metrics.append(String.format("syllabifier_cache_evictions_total %d%n", syllabifier.evictions()));
+        metrics.append(String.format("syllabifier_cache_size %d%n", syllabifier.size()));
+        metrics.append(String.format("syllabifier_rules_version %d%n", syllabifier.rules().version()));
+        if (reloader != null) {
+            metrics.append(String.format("syllabifier_rules_reloads_total{result=\"ok\"} %d%n", reloader.reloads()));
+            metrics.append(String.format("syllabifier_rules_reloads_total{result=\"failed\"} %d%n",
+                    reloader.failures()));
+        }
+        metrics.append(String.format("syllabifier_virtual_threads %d%n", virtualThreads ? 1 : 0));
+        metrics.append(String.format("syllabifier_uptime_seconds %.3f%n", (System.nanoTime() - startNanos) / 1e9));
+
+        respond(exchange, 200, TEXT_PLAIN, metrics.toString());
+    }
+
+    private static void requireMethod(HttpExchange exchange, String method) {
+        if (!exchange.getRequestMethod().equals(method)) {
+            exchange.getResponseHeaders().set("Allow", method);
+            throw new ClientError(405, "Method not allowed");
+        }
+    }
+
+    private static Map<String, String> queryParams(HttpExchange exchange) {
+        var params = new HashMap<String, String>();
+
+        var query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return params;
+
+        for (var param : query.split("&")) {
+            int eq = param.indexOf('=');
+            if (eq == -1) continue;
+
+            try {
+                params.put(URLDecoder.decode(param.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(param.substring(eq + 1), StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new ClientError(400, "Malformed query string");
+            }
+        }
+
+        return params;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        var lengthHeader = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (lengthHeader != null) {
+            long length;
+            try {
+                length = Long.parseLong(lengthHeader.trim());
+            } catch (NumberFormatException e) {
+                throw new ClientError(400, "Malformed Content-Length");
+            }
+
+            if (length > MAX_BODY_SIZE) {
+                throw new ClientError(413, "Request body larger than " + MAX_BODY_SIZE + " bytes");
+            }
+        }
+
+        var body = exchange.getRequestBody().readNBytes(MAX_BODY_SIZE + 1);
+        if (body.length > MAX_BODY_SIZE) {
+            throw new ClientError(413, "Request body larger than " + MAX_BODY_SIZE + " bytes");
+        }
+
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    // The request body must be consumed for the connection to be reused.
+    private static void drain(InputStream body) throws IOException {
+        body.transferTo(OutputStream.nullOutputStream());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+
+        if (bytes.length > 0) exchange.getResponseBody().write(bytes);
+    }
+
+    /*
+     * Sets the JVM-wide nodelay property, before the first server is created:
+     * with Nagle on, keep-alive requests wait out the client's delayed ACK.
+     */
+    static void disableNagle() {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /**
+     * Usage: SyllabificationServer [--host=HOST] [--port=PORT] [--cache-size=N] [--rules=DIR]
+     * <p>
+     * Listens on 127.0.0.1:8080 by default. With {@code --rules}, takes its
+     * rules from a directory, and reloads them as they change.
+     */
+    public static void main(String ... args) throws IOException {
+        var host = "127.0.0.1";
+        int port = DEFAULT_PORT;
+        int cacheSize = DEFAULT_CACHE_SIZE;
+        Path rulesDir = null;
+
+        for (var arg : args) {
+            if (arg.startsWith("--host=")) {
+                host = arg.substring("--host=".length());
+            } else if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--cache-size=")) {
+                cacheSize = Integer.parseInt(arg.substring("--cache-size=".length()));
+            } else if (arg.startsWith("--rules=")) {
+                rulesDir = Path.of(arg.substring("--rules=".length()));
+            } else {
+                System.err.println(
+                        "Usage: SyllabificationServer [--host=HOST] [--port=PORT] [--cache-size=N] [--rules=DIR]");
+                System.exit(2);
+            }
+        }
+
+        disableNagle();
+
+        var syllabifier = new Syllabifier();
+        var reloader = rulesDir != null ? new RuleReloader(syllabifier, rulesDir) : null;
+
+        var server = new SyllabificationServer(new InetSocketAddress(host, port),
+                new CachingSyllabifier(syllabifier, cacheSize), reloader);
+        server.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+
+        System.err.printf("Listening on http://%s:%d/ (%s threads)%n",
+                host, server.port(), server.usesVirtualThreads() ? "virtual" : "platform");
+    }
+}
@@ -0,0 +1,34 @@
+#!/bin/bash
+# Runs the syllabifier as a stdin/stdout filter - see SyllabifierFilter for
+# the options. E.g.:
+#
+#   echo магданоз | ./syllabify.sh --format=arrow
+#   ./syllabify.sh --text --soft-hyphen < article.txt > article.shy.txt
+#
+# Needs the jar: mvn package
+#
+# Most of a short run goes to starting the JVM, so the first run records the
+# classes it loads in a class data sharing (AppCDS) archive next to the jar,
+# and later runs map it instead of loading and verifying them again. The
+# archive is recreated whenever the jar is rebuilt. Short runs also do best
+# with the C1 compiler and the serial collector, and filtering is I/O bound
+# enough that long ones don't lose by it.
+set -e
+
+JAR="${BG_SYLLABIFIER_JAR:-$(dirname "$0")/target/bg-syllabifier-0.1.0-SNAPSHOT.jar}"
+ARCHIVE="${JAR%.jar}.jsa"
+
+if [ ! -f "$JAR" ]; then
+    echo "No $JAR - build it with: mvn package" >&2
+    exit 1
+fi
+
+if [ -f "$ARCHIVE" ] && [ "$ARCHIVE" -nt "$JAR" ]; then
+    CDS="-XX:SharedArchiveFile=$ARCHIVE"
+else
+    rm -f "$ARCHIVE"
+    CDS="-XX:ArchiveClassesAtExit=$ARCHIVE"
+fi
+
+exec java $CDS -Xshare:auto -XX:TieredStopAtLevel=1 -XX:+UseSerialGC \
+    -cp "$JAR" chernorizets.bg.syllabifier.corpus.SyllabifierFilter "$@"
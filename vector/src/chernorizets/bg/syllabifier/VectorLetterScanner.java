@@ -0,0 +1,134 @@
+package chernorizets.bg.syllabifier;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.OR;
+import static jdk.incubator.vector.VectorOperators.UNSIGNED_LT;
+
+/**
+ * Classifies characters into {@link LetterMasks} 16 at a time, with the
+ * incubating Vector API.
+ * <p>
+ * Built by the {@code vector} Maven profile only, for Java 17 and up, and
+ * loaded by {@link LetterScanner} if {@code jdk.incubator.vector} is there.
+ * <p>
+ * Letters are classified by ranges, which covers ASCII, the Bulgarian
+ * alphabet and the punctuation around it. Whatever's left - other scripts,
+ * and the rest of the Cyrillic block - is rare in Bulgarian text, and is
+ * looked up with {@link Character#isLetter} a character at a time.
+ */
+final class VectorLetterScanner extends LetterScanner {
+
+    // Java 17 has no intrinsic for VectorMask.toLong(), so masks are turned
+    // into bits by OR-ing a bit per lane - which has to fit in a short.
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_256;
+
+    private static final int LANES = SPECIES.length();
+
+    private static final ShortVector ZERO = ShortVector.zero(SPECIES);
+
+    // 1 << lane
+    private static final ShortVector LANE_BITS = laneBits();
+
+    // Lowercase Bulgarian vowels
+    private static final short[] VOWELS = vowels();
+
+    VectorLetterScanner() {
+        // Without 256-bit vectors in hardware, this would be much slower
+        // than the scalar scanner.
+        if (ShortVector.SPECIES_PREFERRED.length() < LANES) {
+            throw new UnsupportedOperationException("No hardware support for " + SPECIES);
+        }
+    }
+
+    private static ShortVector laneBits() {
+        var bits = new short[LANES];
+        for (int i = 0; i < LANES; i++) bits[i] = (short) (1 << i);
+
+        return ShortVector.fromArray(SPECIES, bits, 0);
+    }
+
+    private static short[] vowels() {
+        var vowels = new short[LetterClassifier.VOWELS.size()];
+
+        int i = 0;
+        for (char ch : LetterClassifier.VOWELS) vowels[i++] = (short) ch;
+
+        return vowels;
+    }
+
+    @Override
+    boolean isVectorized() {
+        return true;
+    }
+
+    @Override
+    void scan(char[] text, int from, int to, long[] letters, long[] marks, long[] vowels, long[] cyrillic) {
+        int base = from;
+
+        for (; base + Long.SIZE <= to; base += Long.SIZE) {
+            long l = 0, m = 0, v = 0, c = 0;
+
+            for (int k = 0; k < Long.SIZE; k += LANES) {
+                var chars = ShortVector.fromCharArray(SPECIES, text, base + k);
+
+                var ascii = chars.compare(UNSIGNED_LT, (short) 0x80);
+                var asciiLetter = chars.or((short) 0x20).sub((short) 'a').compare(UNSIGNED_LT, (short) 26);
+                var mark = chars.sub((short) '\u0300').compare(UNSIGNED_LT, (short) 0x70);
+
+                // General punctuation - dashes, quotes, spaces - has no letters.
+                var punctuation = chars.sub((short) '\u2000').compare(UNSIGNED_LT, (short) 0x70);
+
+                // Ѐ to џ are all letters - the rest of the block varies.
+                var blockOffsets = chars.sub((short) 'Ѐ');
+                var inBlock = blockOffsets.compare(UNSIGNED_LT, (short) 0x100);
+                var blockLetter = blockOffsets.compare(UNSIGNED_LT, (short) 0x60);
+
+                long letterBits = bits(asciiLetter.or(blockLetter));
+
+                var unknown = ascii.or(mark).or(punctuation).or(blockLetter).not();
+                if (unknown.anyTrue()) {
+                    for (long u = bits(unknown); u != 0; u &= u - 1) {
+                        int lane = Long.numberOfTrailingZeros(u);
+                        if (Character.isLetter(text[base + k + lane])) letterBits |= 1L << lane;
+                    }
+                }
+
+                // Fold Ѐ-Џ and А-Я to lowercase, and compare with each vowel
+                var lower = chars
+                        .add((short) 0x50, blockOffsets.compare(UNSIGNED_LT, (short) 0x10))
+                        .add((short) 0x20, chars.sub((short) 'А').compare(UNSIGNED_LT, (short) 0x20));
+
+                VectorMask<Short> vowel = lower.eq(VOWELS[0]);
+                for (int i = 1; i < VOWELS.length; i++) vowel = vowel.or(lower.eq(VOWELS[i]));
+
+                l |= letterBits << k;
+                v |= bits(vowel) << k;
+
+                if (mark.anyTrue()) {
+                    long markBits = bits(mark);
+                    m |= markBits << k;
+                    c |= (bits(inBlock) | markBits) << k;
+                } else {
+                    c |= bits(inBlock) << k;
+                }
+            }
+
+            int w = base >>> 6;
+            letters[w] = l;
+            marks[w] = m;
+            vowels[w] = v;
+            cyrillic[w] = c;
+        }
+
+        // The last, partial block
+        if (base < to) super.scan(text, base, to, letters, marks, vowels, cyrillic);
+    }
+
+    // Bit i set if lane i is set
+    private static long bits(VectorMask<Short> mask) {
+        return ZERO.blend(LANE_BITS, mask).reduceLanes(OR) & 0xFFFFL;
+    }
+}